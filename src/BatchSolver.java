@@ -0,0 +1,304 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+    
+    Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+import edu.inforscience.lang.Function;
+import edu.inforscience.lang.Parser;
+import edu.inforscience.math.*;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.*;
+
+/**
+ * Solves a stream of jobs without a GUI. Every line of the input is a job
+ *
+ *   expression; method; a; b; epsilon; g(x)
+ *
+ * where method is one of best, brute, bisection, brent, illinois,
+ * anderson-bjorck, itp, newton, secant, fixed or halley, [a, b] defaults
+ * to [-100, 100], epsilon to 1e-3 like the main window, and g(x) is only
+ * needed by the fixed point method. Blank lines and lines starting with #
+ * are skipped.
+ *
+ * Jobs run on a pool of worker threads. Results are written in input
+ * order, one line per job, "line TAB ok TAB roots..." or
+ * "line TAB error TAB message", and only a few jobs per thread are in
+ * flight at any time, so memory use doesn't depend on the size of the
+ * input.
+ */
+public class BatchSolver {
+  /** Jobs in flight per worker thread. */
+  public static final int JOBS_PER_THREAD = 4;
+  public static final String NOT_FOUND = "not-found";
+
+  private final int threads;
+  private int jobs;
+  private int errors;
+  private int roots;
+
+  public BatchSolver(int threads)
+  {
+    this.threads = threads;
+  }
+
+  /**
+   * Solves every job of in and writes the results to out as they are
+   * ready, a summary with the throughput is written to log at the end.
+   * @param in jobs, one per line
+   * @param out receives one result line per job
+   * @param log receives the summary
+   * @throws IOException if in can't be read
+   */
+  public void run(BufferedReader in, PrintWriter out, PrintStream log)
+      throws IOException
+  {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+    int window = JOBS_PER_THREAD * threads;
+    long start = System.nanoTime();
+
+    try {
+      String line;
+      int number = 0;
+      while ((line = in.readLine()) != null) {
+        number++;
+        String text = line.trim();
+        if (text.length() == 0 || text.startsWith("#"))
+          continue;
+
+        pending.add(pool.submit(new Job(number, text)));
+        if (pending.size() >= window)
+          write(pending.poll(), out);
+      }
+
+      while (!pending.isEmpty())
+        write(pending.poll(), out);
+    } finally {
+      pool.shutdownNow();
+      out.flush();
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    log.printf(Locale.US,
+               "%d jobs, %d errors, %d roots in %.3f s, %.1f jobs/s%n",
+               jobs, errors, roots, seconds, jobs / seconds);
+  }
+
+  private void write(Future<String> result, PrintWriter out)
+      throws IOException
+  {
+    String line;
+    try {
+      line = result.get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("batch interrupted");
+    } catch (ExecutionException e) {
+      line = "?\terror\t" + e.getCause();
+    }
+
+    jobs++;
+    String[] fields = line.split("\t");
+    if (fields[1].equals("error"))
+      errors++;
+    else
+      for (int i = 2; i < fields.length; i++)
+        if (!fields[i].equals(NOT_FOUND))
+          roots++;
+
+    out.println(line);
+    if (out.checkError())
+      throw new IOException("cannot write results");
+  }
+
+  /**
+   * Solves f(x) = 0 in [a, b] with the method named as in the jobs file.
+   * @param f the function
+   * @param method best, brute, bisection, brent, illinois, anderson-bjorck,
+   *               itp, newton, secant, fixed or halley
+   * @param a start of the interval
+   * @param b end of the interval
+   * @param epsilon error tolerance
+   * @param g g(x) for the fixed point method, null for the others
+   * @return ArrayList&lt;Solution&gt;, the roots, see Solution.hasRoot() for
+   *         the ones where a method didn't converge
+   * @throws IllegalArgumentException if the method is unknown or g is
+   *         missing
+   */
+  public static ArrayList<Solution> solve(Function f, String method,
+                                          double a, double b, double epsilon,
+                                          Function g)
+  {
+    String name = method.toLowerCase(Locale.US);
+
+    if (name.equals("best")) {
+      if (f.getDegree() > 0)
+        return new Aberth(f).solve(a, b, epsilon);
+      return new Brent(f).solve(a, b, epsilon);
+    } else if (name.equals("brute")) {
+      return new BruteForce(f).solve(a, b);
+    } else if (name.equals("bisection")) {
+      return new Bisection(f).solve(a, b, epsilon);
+    } else if (name.equals("brent")) {
+      return new Brent(f).solve(a, b, epsilon);
+    } else if (name.equals("illinois")) {
+      return new RegulaFalsi(f, RegulaFalsi.ILLINOIS).solve(a, b, epsilon);
+    } else if (name.equals("anderson-bjorck")) {
+      return new RegulaFalsi(f, RegulaFalsi.ANDERSON_BJORCK)
+          .solve(a, b, epsilon);
+    } else if (name.equals("itp")) {
+      return new Itp(f).solve(a, b, epsilon);
+    } else if (name.equals("newton")) {
+      return new NewtonRaphson(f).solve(a, b, epsilon);
+    } else if (name.equals("secant")) {
+      return new Secant(f).solve(a, b, epsilon);
+    } else if (name.equals("halley")) {
+      return new Halley(f).solve(a, b, epsilon);
+    } else if (name.equals("fixed")) {
+      if (g == null)
+        throw new IllegalArgumentException("the fixed point method needs g(x)");
+      return new FixedPoint(f, g).solve(a, b, epsilon);
+    }
+
+    throw new IllegalArgumentException("unknown method " + method);
+  }
+
+  /**
+   * Splits a job line into its fields, filling in the defaults.
+   * @param text a job, neither blank nor a comment
+   * @return Spec, the fields of the job
+   * @throws IllegalArgumentException if fields are missing or a number is
+   *         invalid
+   */
+  static Spec parse(String text)
+  {
+    String[] fields = text.split(";");
+    for (int i = 0; i < fields.length; i++)
+      fields[i] = fields[i].trim();
+
+    if (fields.length < 2)
+      throw new IllegalArgumentException(
+          "expected: expression; method; a; b; epsilon");
+
+    try {
+      return new Spec(fields[0], fields[1],
+                      fields.length > 2 ? Double.parseDouble(fields[2]) : -100,
+                      fields.length > 3 ? Double.parseDouble(fields[3]) : 100,
+                      fields.length > 4 ? Double.parseDouble(fields[4]) : 1e-3,
+                      fields.length > 5 ? fields[5] : null);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid number " + e.getMessage());
+    }
+  }
+
+  /**
+   * The fields of a job line, the expressions aren't compiled yet.
+   */
+  static class Spec {
+    final String expression;
+    final String method;
+    final double a, b, epsilon;
+    /** g(x), null if the line doesn't have it */
+    final String g;
+
+    Spec(String expression, String method, double a, double b,
+         double epsilon, String g)
+    {
+      this.expression = expression;
+      this.method = method;
+      this.a = a;
+      this.b = b;
+      this.epsilon = epsilon;
+      this.g = g;
+    }
+  }
+
+  /**
+   * One line of the input, solved on a worker thread.
+   */
+  private static class Job implements Callable<String> {
+    private final int number;
+    private final String text;
+
+    Job(int number, String text)
+    {
+      this.number = number;
+      this.text = text;
+    }
+
+    public String call()
+    {
+      try {
+        return solve();
+      } catch (RuntimeException e) {
+        return error(e.toString());
+      } catch (StackOverflowError e) {
+        // A deeply nested expression, the other jobs can still run
+        return error(e.toString());
+      }
+    }
+
+    private String solve()
+    {
+      Spec spec;
+      try {
+        spec = parse(text);
+      } catch (IllegalArgumentException e) {
+        return error(e.getMessage());
+      }
+
+      Function f = new Function(spec.expression, "f(x)");
+      if (f.getErrorCode() != Parser.SUCCESS)
+        return error("invalid expression, parser error " + f.getErrorCode());
+
+      Function g = null;
+      if (spec.g != null) {
+        g = new Function(spec.g, "g(x)");
+        if (g.getErrorCode() != Parser.SUCCESS)
+          return error("invalid g(x), parser error " + g.getErrorCode());
+      }
+
+      ArrayList<Solution> solutions;
+      try {
+        solutions = BatchSolver.solve(f, spec.method, spec.a, spec.b,
+                                       spec.epsilon, g);
+      } catch (IllegalArgumentException e) {
+        return error(e.getMessage());
+      }
+
+      StringBuilder result = new StringBuilder();
+      result.append(number).append("\tok");
+      for (Solution s : solutions) {
+        result.append('\t');
+        if (!s.hasRoot())
+          result.append(NOT_FOUND);
+        else
+          result.append(s.getX());
+      }
+
+      return result.toString();
+    }
+
+    private String error(String message)
+    {
+      return number + "\terror\t" + message;
+    }
+  }
+}
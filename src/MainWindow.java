@@ -42,6 +42,10 @@ public class MainWindow extends JFrame {
   public static final int SECANT              = 4;
   public static final int FIXED_POINT         = 5;
   public static final int AITKEN_ACCELERATION = 6;
+  public static final int HALLEY              = 7;
+  public static final int ILLINOIS            = 8;
+  public static final int ANDERSON_BJORCK     = 9;
+  public static final int ITP                 = 10;
 
   public static final int MAX_COLORS          = 25;
 
@@ -58,6 +62,7 @@ public class MainWindow extends JFrame {
   private JMenuItem aboutAction;
 
   private String lastFunctionName;
+  private MethodSelector methodSelector;
 
   private JToolBar toolBar;
   private JTextPane logPane;
@@ -191,7 +196,11 @@ public class MainWindow extends JFrame {
                                 messages.getString("Method.newton.raphson"),
                                 messages.getString("Method.secant"),
                                 messages.getString("Method.fixedPoint"),
-                                messages.getString("Method.aitken")
+                                messages.getString("Method.aitken"),
+                                messages.getString("Method.halley"),
+                                messages.getString("Method.illinois"),
+                                messages.getString("Method.andersonBjorck"),
+                                messages.getString("Method.itp")
                               };
 
     methodList = new JComboBox(methodNames);
@@ -207,6 +216,7 @@ public class MainWindow extends JFrame {
 
 
     lastFunctionName = "e";
+    methodSelector = new MethodSelector();
     functionList = new Vector<Function>();
 
 
@@ -589,92 +599,100 @@ public class MainWindow extends JFrame {
 
   private void solve(Function f, int method, double epsilon)
   {
-    ArrayList<Solution> solutions;
     String[] S = new String[]{};
+    String summary = "";
+
+    if (method == BEST_SUITED && f.getDegree() > 0) {
+      // Polynomials get all their roots, complex ones too
+      Complex[] roots = new Aberth(f).roots();
+      S = new String[roots.length];
+
+      for (int i = 0; i < roots.length; i++) {
+        Complex z = roots[i];
+        if (z.getIm() == 0)
+          S[i] = Math.round(z.getRe(), 6) + "";
+        else
+          S[i] = new Complex(Math.round(z.getRe(), 6),
+                             Math.round(z.getIm(), 6)).toString();
+      }
+    } else if (method == AITKEN_ACCELERATION) {
+      summary = "NO IMPLEMENTED YET";
+    } else {
+      RootFinder finder = rootFinder(f, method);
+      if (finder != null) {
+        long start = System.nanoTime();
+        ArrayList<Solution> solutions = finder.solve(-100, 100, epsilon);
+        long nanos = System.nanoTime() - start;
+        methodSelector.record(finder, solutions, nanos);
 
-    switch (method) {
-      case BEST_SUITED:
-      case BRUTE_FORCE:
-        BruteForce bruteForce = new BruteForce(f);
-        solutions = bruteForce.solve(-100,  100);
         S = new String[solutions.size()];
-
+        int roots = 0;
         for (int i = 0; i < solutions.size(); i++) {
           Solution s = solutions.get(i);
-          S[i] = Math.round(s.getX(), 6) + "";
+          if (s.hasRoot())
+            roots++;
+          S[i] = s.hasRoot() ? Math.round(s.getX(), 6) + "" : "NOT FOUND";
         }
-        break;
 
-      case BISECTION:
-        Bisection bisection = new Bisection(f);
-        solutions = bisection.solve(-100, 100, epsilon);
-        S = new String[solutions.size()];
-        for (int i = 0; i < solutions.size(); i++) {
-          Solution sol = solutions.get(i);
-          S[i] = Math.round(sol.getX(), 6) + "";
-        }
-        break;
-      case NEWTON_RAPHSON:
-        NewtonRaphson newtonRaphson = new NewtonRaphson(f);
-        solutions = newtonRaphson.solve(-100, 100, epsilon);
+        summary = String.format("%s: %d roots, %d evaluations, %.3f ms%n%s",
+                                finder.getName(), roots,
+                                finder.getEvaluations(), nanos / 1e6,
+                                methodSelector.report(finder.getName()));
+      }
+    }
 
-        S = new String[solutions.size()];
-        for (int i = 0; i < solutions.size(); i++) {
-          Solution sol = solutions.get(i);
-          if (sol == null)
-            S[i] = "NOT FOUND";
-          else
-            S[i] = Math.round(sol.getX(), 6) + "";
-        }
-        break;
+    logPane.setText(summary);
+    solutionsList.setListData(new String[]{});
+    solutionsList.setListData(S);
+  }
 
-      case SECANT:
-        Secant secant = new Secant(f);
-        solutions = secant.solve(-100, 100, epsilon);
+  /**
+   * Returns the method to use. BEST_SUITED is Brent's method, which is as
+   * safe as bisection and about as fast as the secant method.
+   * @return RootFinder, null if g(x) is needed and isn't valid
+   */
+  private RootFinder rootFinder(Function f, int method)
+  {
+    switch (method) {
+      case BEST_SUITED:
+        return new Brent(f);
 
-        S = new String[solutions.size()];
-        for (int i = 0; i < solutions.size(); i++) {
-          Solution sol = solutions.get(i);
-          if (sol == null)
-            S[i] = "NOT FOUND";
-          else
-            S[i] = Math.round(sol.getX(), 6) + "";
-        }
+      case BRUTE_FORCE:
+        return new BruteForce(f);
 
-        break;
+      case BISECTION:
+        return new Bisection(f);
+
+      case NEWTON_RAPHSON:
+        return new NewtonRaphson(f);
+
+      case SECANT:
+        return new Secant(f);
 
       case FIXED_POINT:
-        Function gx = null;
         String str = gxFunction.getText();
         Parser parser = new Parser();
-        if (parser.validate(str)) {
-          gx = new Function(str, "g(x)");
-        } else {
+        if (!parser.validate(str)) {
           gxFunction.setBackground(new Color(255, 170, 170));
-          break;
+          return null;
         }
 
-        FixedPoint fixedPoint = new FixedPoint(f, gx);
-        solutions = fixedPoint.solve(-100, 100, epsilon);
+        return new FixedPoint(f, new Function(str, "g(x)"));
 
-        S = new String[solutions.size()];
-        for (int i = 0; i < solutions.size(); i++) {
-          Solution sol = solutions.get(i);
-          if (sol == null)
-            S[i] = "NOT FOUND";
-          else
-            S[i] = Math.round(sol.getX(), 6) + "";
-        }
-        break;
+      case HALLEY:
+        return new Halley(f);
 
-      case AITKEN_ACCELERATION:
-        logPane.setText("NO IMPLEMENTED YET");
-        break;
-    };
+      case ILLINOIS:
+        return new RegulaFalsi(f, RegulaFalsi.ILLINOIS);
 
-    logPane.setText("");
-    solutionsList.setListData(new String[]{});
-    solutionsList.setListData(S);
+      case ANDERSON_BJORCK:
+        return new RegulaFalsi(f, RegulaFalsi.ANDERSON_BJORCK);
+
+      case ITP:
+        return new Itp(f);
+    }
+
+    return null;
   }
 }
 
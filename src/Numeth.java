@@ -17,16 +17,70 @@
     along with this program. If not, see <http://www.gnu.org/licenses/>.
 */
 
-import edu.inforscience.lang.Parser;
-
 import java.io.*;
 
 public class Numeth {
 
+  /**
+   * Opens the main window, or with --batch solves a file of jobs without a
+   * GUI, see {@link BatchSolver}:
+   *
+   *   Numeth --batch [--threads n] [jobs [results]]
+   *
+   * Jobs are read from standard input and results written to standard
+   * output when the files are missing or "-". With --serve it runs the
+   * HTTP service of {@link SolveServer} instead:
+   *
+   *   Numeth --serve [port]
+   */
   public static void main(String[] args) throws IOException
   {
+    if (args.length > 0 && args[0].equals("--batch")) {
+      batch(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("--serve")) {
+      int port = args.length > 1 ? Integer.parseInt(args[1])
+                                 : SolveServer.DEFAULT_PORT;
+      SolveServer server = new SolveServer(port);
+      server.start();
+      System.err.println("Listening on http://127.0.0.1:" + server.getPort());
+      return;
+    }
+
     MainWindow window = new MainWindow();
     window.setVisible(true);
   }
-}
 
+  private static void batch(String[] args) throws IOException
+  {
+    int threads = Runtime.getRuntime().availableProcessors();
+    String input = "-";
+    String output = "-";
+
+    int i = 1;
+    if (i + 1 < args.length && args[i].equals("--threads")) {
+      threads = Integer.parseInt(args[i + 1]);
+      i += 2;
+    }
+    if (i < args.length)
+      input = args[i++];
+    if (i < args.length)
+      output = args[i++];
+
+    BufferedReader in = new BufferedReader(input.equals("-")
+        ? new InputStreamReader(System.in, "UTF-8")
+        : new InputStreamReader(new FileInputStream(input), "UTF-8"));
+    PrintWriter out = new PrintWriter(new BufferedWriter(output.equals("-")
+        ? new OutputStreamWriter(System.out, "UTF-8")
+        : new OutputStreamWriter(new FileOutputStream(output), "UTF-8")));
+
+    try {
+      new BatchSolver(threads).run(in, out, System.err);
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+}
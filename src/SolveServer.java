@@ -0,0 +1,533 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+    
+    Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+    
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+    
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+    
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.inforscience.lang.ExpressionCache;
+import edu.inforscience.lang.Function;
+import edu.inforscience.lang.Parser;
+import edu.inforscience.math.Solution;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local HTTP service for the evaluator and the solvers, answers are JSON.
+ * Parameters go in the query string or in a form encoded POST body:
+ *
+ *   /evaluate?f=x^2-2&amp;x=1,2,3        f at each x
+ *   /sample?f=sin(x)&amp;a=0&amp;b=1&amp;n=100   f at n evenly spaced points of [a, b]
+ *   /solve?f=x^2-2&amp;method=newton&amp;a=-10&amp;b=10&amp;epsilon=1e-9&amp;g=...
+ *   /batch                            POST, one job per line in the format
+ *                                     of {@link BatchSolver}
+ *   /metrics                          request counters and latencies
+ *
+ * Each request runs on its own virtual thread when the JVM has them, on a
+ * cached thread pool otherwise. Compiled functions are kept in a bounded
+ * cache, so repeated requests for the same expression don't compile it
+ * again.
+ */
+public class SolveServer {
+  public static final int DEFAULT_PORT = 8080;
+  public static final int MAX_POINTS = 100000;
+  public static final int MAX_BODY = 1 << 20;
+  public static final int FUNCTION_CACHE_SIZE = 1024;
+
+  private static final String[] ENDPOINTS = {
+    "evaluate", "sample", "solve", "batch", "metrics"
+  };
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final long started;
+  private final HashMap<String, Counter> counters;
+  private final LinkedHashMap<String, Function> functions;
+  private final LongAdder functionHits = new LongAdder();
+  private final LongAdder functionMisses = new LongAdder();
+
+  /**
+   * Latency and outcome of the requests to one endpoint.
+   */
+  private static class Counter {
+    final LongAdder requests = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long elapsed, boolean failed)
+    {
+      requests.increment();
+      if (failed)
+        errors.increment();
+      nanos.add(elapsed);
+
+      long max = maxNanos.get();
+      while (elapsed > max && !maxNanos.compareAndSet(max, elapsed))
+        max = maxNanos.get();
+    }
+  }
+
+  /**
+   * A request that can't be answered, reported with status 400.
+   */
+  private static class BadRequest extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    BadRequest(String message)
+    {
+      super(message);
+    }
+  }
+
+  /**
+   * Creates a server listening on the loopback interface.
+   * @param port TCP port, 0 for any free one
+   * @throws IOException if the port can't be bound
+   */
+  public SolveServer(int port) throws IOException
+  {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+    executor = newExecutor();
+    server.setExecutor(executor);
+    started = System.nanoTime();
+
+    counters = new HashMap<String, Counter>();
+    for (String endpoint : ENDPOINTS) {
+      counters.put(endpoint, new Counter());
+      server.createContext("/" + endpoint, new Handler(endpoint));
+    }
+
+    functions = new LinkedHashMap<String, Function>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Function> eldest)
+      {
+        return size() > FUNCTION_CACHE_SIZE;
+      }
+    };
+  }
+
+  /**
+   * Returns an executor that starts a virtual thread per task. They are
+   * looked up by reflection so the server still runs, on platform threads,
+   * in JVMs that don't have them.
+   */
+  private static ExecutorService newExecutor()
+  {
+    try {
+      return (ExecutorService)Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (Exception e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  public void start()
+  {
+    server.start();
+  }
+
+  public void stop()
+  {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  public int getPort()
+  {
+    return server.getAddress().getPort();
+  }
+
+  private class Handler implements HttpHandler {
+    private final String endpoint;
+
+    Handler(String endpoint)
+    {
+      this.endpoint = endpoint;
+    }
+
+    public void handle(HttpExchange exchange) throws IOException
+    {
+      long start = System.nanoTime();
+      int status = 200;
+      String body;
+
+      try {
+        Map<String, String> parameters = parameters(exchange);
+        body = answer(endpoint, exchange, parameters);
+      } catch (BadRequest e) {
+        status = 400;
+        body = "{\"error\": " + quote(e.getMessage()) + "}";
+      } catch (IOException e) {
+        // Unreadable or too large body
+        status = 400;
+        body = "{\"error\": " + quote(String.valueOf(e.getMessage())) + "}";
+      } catch (Throwable e) {
+        // Also errors, like the StackOverflowError of a deeply nested
+        // expression, the client must get an answer
+        status = 500;
+        body = "{\"error\": " + quote(e.toString()) + "}";
+      }
+
+      try {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type",
+                                          "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      } finally {
+        counters.get(endpoint).record(System.nanoTime() - start,
+                                      status != 200);
+      }
+    }
+  }
+
+  private String answer(String endpoint, HttpExchange exchange,
+                        Map<String, String> parameters)
+      throws IOException, BadRequest
+  {
+    if (endpoint.equals("evaluate"))
+      return evaluate(parameters);
+    if (endpoint.equals("sample"))
+      return sample(parameters);
+    if (endpoint.equals("solve"))
+      return solve(parameters);
+    if (endpoint.equals("batch"))
+      return batch(exchange);
+    return metrics();
+  }
+
+  private String evaluate(Map<String, String> parameters) throws BadRequest
+  {
+    Function f = function(parameters, "f");
+    String[] xs = required(parameters, "x").split(",");
+    if (xs.length > MAX_POINTS)
+      throw new BadRequest("at most " + MAX_POINTS + " points");
+
+    StringBuilder json = new StringBuilder("{\"values\": [");
+    for (int i = 0; i < xs.length; i++) {
+      if (i > 0)
+        json.append(", ");
+      json.append(number(f.evaluate(parseDouble(xs[i].trim(), "x"))));
+    }
+
+    return json.append("]}").toString();
+  }
+
+  private String sample(Map<String, String> parameters) throws BadRequest
+  {
+    Function f = function(parameters, "f");
+    double a = parseDouble(required(parameters, "a"), "a");
+    double b = parseDouble(required(parameters, "b"), "b");
+    int n = (int)parseDouble(required(parameters, "n"), "n");
+    if (n < 2 || n > MAX_POINTS)
+      throw new BadRequest("n must be between 2 and " + MAX_POINTS);
+
+    double[] values = new double[n];
+    double step = (b - a) / (n - 1);
+    f.evaluate(a, step, n, values);
+
+    StringBuilder json = new StringBuilder("{\"x\": [");
+    for (int i = 0; i < n; i++)
+      json.append(i > 0 ? ", " : "").append(number(a + i * step));
+    json.append("], \"values\": [");
+    for (int i = 0; i < n; i++)
+      json.append(i > 0 ? ", " : "").append(number(values[i]));
+
+    return json.append("]}").toString();
+  }
+
+  private String solve(Map<String, String> parameters) throws BadRequest
+  {
+    Function f = function(parameters, "f");
+    Function g = parameters.containsKey("g") ? function(parameters, "g")
+                                             : null;
+    String method = parameters.containsKey("method")
+                    ? parameters.get("method") : "best";
+    double a = parameters.containsKey("a")
+               ? parseDouble(parameters.get("a"), "a") : -100;
+    double b = parameters.containsKey("b")
+               ? parseDouble(parameters.get("b"), "b") : 100;
+    double epsilon = parameters.containsKey("epsilon")
+                     ? parseDouble(parameters.get("epsilon"), "epsilon")
+                     : 1e-3;
+
+    ArrayList<Solution> solutions;
+    try {
+      solutions = BatchSolver.solve(f, method, a, b, epsilon, g);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequest(e.getMessage());
+    }
+
+    return "{\"roots\": " + roots(solutions) + "}";
+  }
+
+  /**
+   * Solves every line of the body as a job of {@link BatchSolver}, the
+   * answer has one entry per job, in order.
+   */
+  private String batch(HttpExchange exchange) throws IOException, BadRequest
+  {
+    if (!exchange.getRequestMethod().equals("POST"))
+      throw new BadRequest("jobs must be POSTed");
+
+    StringBuilder json = new StringBuilder("{\"results\": [");
+    BufferedReader in = new BufferedReader(
+        new InputStreamReader(body(exchange), "UTF-8"));
+    String line;
+    int jobs = 0;
+
+    while ((line = in.readLine()) != null) {
+      String text = line.trim();
+      if (text.length() == 0 || text.startsWith("#"))
+        continue;
+
+      json.append(jobs++ > 0 ? ", " : "");
+      try {
+        BatchSolver.Spec spec = BatchSolver.parse(text);
+        Function f = function(spec.expression);
+        Function g = spec.g != null ? function(spec.g) : null;
+
+        String roots = roots(BatchSolver.solve(f, spec.method, spec.a, spec.b,
+                                               spec.epsilon, g));
+        json.append("{\"roots\": ").append(roots).append('}');
+      } catch (BadRequest e) {
+        json.append("{\"error\": ").append(quote(e.getMessage())).append('}');
+      } catch (IllegalArgumentException e) {
+        json.append("{\"error\": ").append(quote(e.getMessage())).append('}');
+      }
+    }
+
+    return json.append("]}").toString();
+  }
+
+  private String metrics()
+  {
+    double uptime = (System.nanoTime() - started) / 1e9;
+    StringBuilder json = new StringBuilder();
+    json.append("{\"uptimeSeconds\": ").append(number(uptime));
+    json.append(", \"endpoints\": {");
+
+    for (int i = 0; i < ENDPOINTS.length; i++) {
+      Counter c = counters.get(ENDPOINTS[i]);
+      long requests = c.requests.sum();
+      double mean = requests == 0 ? 0 : c.nanos.sum() / 1e6 / requests;
+
+      json.append(i > 0 ? ", " : "").append(quote(ENDPOINTS[i]))
+          .append(": {\"requests\": ").append(requests)
+          .append(", \"errors\": ").append(c.errors.sum())
+          .append(", \"meanMillis\": ").append(number(mean))
+          .append(", \"maxMillis\": ").append(number(c.maxNanos.get() / 1e6))
+          .append(", \"perSecond\": ").append(number(requests / uptime))
+          .append('}');
+    }
+
+    ExpressionCache expressions = ExpressionCache.getShared();
+    json.append("}, \"functionCache\": {\"size\": ").append(cachedFunctions())
+        .append(", \"hits\": ").append(functionHits.sum())
+        .append(", \"misses\": ").append(functionMisses.sum())
+        .append("}, \"expressionCache\": {\"size\": ")
+        .append(expressions.size())
+        .append(", \"hits\": ").append(expressions.getHits())
+        .append(", \"misses\": ").append(expressions.getMisses())
+        .append("}}");
+
+    return json.toString();
+  }
+
+  private int cachedFunctions()
+  {
+    synchronized (functions) {
+      return functions.size();
+    }
+  }
+
+  private Function function(Map<String, String> parameters, String name)
+      throws BadRequest
+  {
+    return function(required(parameters, name));
+  }
+
+  /**
+   * Returns the compiled function for a definition, from the cache when it
+   * was requested before.
+   */
+  private Function function(String definition) throws BadRequest
+  {
+    Function f;
+    synchronized (functions) {
+      f = functions.get(definition);
+    }
+
+    if (f == null) {
+      functionMisses.increment();
+      f = new Function(definition, "f(x)");
+      if (f.getErrorCode() == Parser.SUCCESS) {
+        synchronized (functions) {
+          functions.put(definition, f);
+        }
+      }
+    } else {
+      functionHits.increment();
+    }
+
+    if (f.getErrorCode() != Parser.SUCCESS)
+      throw new BadRequest("invalid expression " + definition
+                           + ", parser error " + f.getErrorCode());
+    return f;
+  }
+
+  private static String required(Map<String, String> parameters, String name)
+      throws BadRequest
+  {
+    String value = parameters.get(name);
+    if (value == null)
+      throw new BadRequest("missing parameter " + name);
+    return value;
+  }
+
+  private static double parseDouble(String text, String name)
+      throws BadRequest
+  {
+    try {
+      return Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw new BadRequest("invalid number for " + name + ": " + text);
+    }
+  }
+
+  /**
+   * Collects the parameters of the query string and, for form encoded
+   * POSTs, of the body.
+   */
+  private static Map<String, String> parameters(HttpExchange exchange)
+      throws IOException, BadRequest
+  {
+    HashMap<String, String> parameters = new HashMap<String, String>();
+    decode(exchange.getRequestURI().getRawQuery(), parameters);
+
+    String type = exchange.getRequestHeaders().getFirst("Content-Type");
+    if (exchange.getRequestMethod().equals("POST") && type != null
+        && type.startsWith("application/x-www-form-urlencoded")) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      InputStream in = body(exchange);
+      byte[] buffer = new byte[8192];
+      for (int n; (n = in.read(buffer)) > 0; )
+        bytes.write(buffer, 0, n);
+      decode(bytes.toString("UTF-8"), parameters);
+    }
+
+    return parameters;
+  }
+
+  private static void decode(String query, Map<String, String> parameters)
+      throws UnsupportedEncodingException
+  {
+    if (query == null || query.length() == 0)
+      return;
+
+    for (String pair : query.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals < 0)
+        continue;
+      parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                     URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+    }
+  }
+
+  /**
+   * Returns the request body, reading more than MAX_BODY bytes from it
+   * fails.
+   */
+  private static InputStream body(HttpExchange exchange)
+  {
+    final InputStream in = exchange.getRequestBody();
+    return new FilterInputStream(in) {
+      private long count;
+
+      @Override
+      public int read() throws IOException
+      {
+        int c = super.read();
+        if (c >= 0 && ++count > MAX_BODY)
+          throw new IOException("request body too large");
+        return c;
+      }
+
+      @Override
+      public int read(byte[] b, int offset, int length) throws IOException
+      {
+        int n = super.read(b, offset, length);
+        if (n > 0 && (count += n) > MAX_BODY)
+          throw new IOException("request body too large");
+        return n;
+      }
+    };
+  }
+
+  private static String roots(ArrayList<Solution> solutions)
+  {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < solutions.size(); i++) {
+      Solution s = solutions.get(i);
+      json.append(i > 0 ? ", " : "").append(s.hasRoot() ? number(s.getX())
+                                                      : "null");
+    }
+
+    return json.append(']').toString();
+  }
+
+  /**
+   * Formats a double for JSON, which has no NaN or infinities.
+   */
+  private static String number(double x)
+  {
+    if (Double.isNaN(x) || Double.isInfinite(x))
+      return "null";
+    return Double.toString(x);
+  }
+
+  private static String quote(String s)
+  {
+    StringBuilder json = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\')
+        json.append('\\').append(c);
+      else if (c < 0x20)
+        json.append(String.format(Locale.US, "\\u%04x", (int)c));
+      else
+        json.append(c);
+    }
+
+    return json.append('"').toString();
+  }
+}
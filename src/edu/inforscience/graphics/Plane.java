@@ -55,6 +55,7 @@ public class Plane extends JPanel implements MouseListener,
   private boolean firstTime;
   private boolean showAxis;
   private boolean showGrid;
+  private boolean fastMath;
 
   private Point startDrag;
   private Point2D markPoint; // Used to mark a solution in the plane
@@ -62,6 +63,7 @@ public class Plane extends JPanel implements MouseListener,
 
 
   private Vector<Function> functionList;
+  private double[] samples; // f(x) for every pixel column
 
   private static Logger logger = Logger.getLogger("edu.inforscience.lang");
 
@@ -73,6 +75,7 @@ public class Plane extends JPanel implements MouseListener,
     addMouseWheelListener(this);
     addMouseMotionListener(this);
     firstTime = true;
+    fastMath = true;
     functionList = new Vector<Function>();
 
     setRealWidth(DEFAULT_REAL_WIDTH);
@@ -150,53 +153,28 @@ public class Plane extends JPanel implements MouseListener,
     //                     RenderingHints.VALUE_ANTIALIAS_ON);
     g2d.setStroke(new BasicStroke(1.2f));
 
-    Parser parser = new Parser();
-    double start = fx(0);
-    double end = fx(getWidth() - 1);
-    double middle = (start + end)/2;
+    int width = getWidth();
+    if (samples == null || samples.length < width)
+      samples = new double[width];
 
     Color tempColor = g2d.getColor();
     for (Function f : functionList) {
       if (!f.isActive()) continue;
-      double dx = fx(1) - fx(0);
 
       g2d.setColor(f.getColor());
 
-      // From the middle to the left
-      double x0, y0, x1, y1;
-      for (x0 = middle; x0 - dx >= start; x0 -= dx) {
-        y0 = f.evaluate(x0);
+      // One sample per pixel column, evaluated in a single batch
+      f.evaluate(fx(0), pixelWidth, width, samples, fastMath);
 
-        if (Double.isNaN(y0))
-          continue;
-
-        x1 =  x0 - dx;
-        y1 = f.evaluate(x1);
-
-        if (Double.isNaN(y1))
-          continue;
-
-        //writer.println("(" + x0 + ", " + y0);
-        //writer.println("(" + x1 + ", " + y1);
-        g2d.drawLine(ix(x0), iy(y0), ix(x0), iy(y1));
-      }
+      for (int i = 1; i < width; i++) {
+        double y0 = samples[i];
+        double y1 = samples[i - 1];
 
-      // From the middle to the right
-      for (x0 = middle; x0 + dx <= end; x0 += dx) {
-        y0 = f.evaluate(x0);
-
-        if (Double.isNaN(y0))
-          continue;
-
-        x1 =  x0 - dx;
-        y1 = f.evaluate(x1);
-
-        if (Double.isNaN(y1))
+        if (Double.isNaN(y0) || Double.isNaN(y1))
           continue;
 
-        g2d.drawLine(ix(x0), iy(y0), ix(x0), iy(y1));
+        g2d.drawLine(i, iy(y0), i, iy(y1));
       }
-
     }
 
     g2d.setColor(tempColor);
@@ -265,6 +243,28 @@ public class Plane extends JPanel implements MouseListener,
   }
 
 
+  /**
+   * Tells whether functions are plotted with the fast elementary function
+   * kernels.
+   * @return boolean, true if the fast kernels are used.
+   */
+  public boolean isFastMath()
+  {
+    return fastMath;
+  }
+
+
+  /**
+   * Chooses between the fast kernels and java.lang.Math to plot functions.
+   * @param fastMath boolean, true to use the fast kernels.
+   */
+  public void setFastMath(boolean fastMath)
+  {
+    this.fastMath = fastMath;
+    repaint();
+  }
+
+
   /**
    * Toggle showGrid state.
    */
@@ -0,0 +1,122 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import edu.inforscience.math.BigMath;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Evaluates compiled programs with BigDecimal arithmetic, to any precision.
+ * It is much slower than the double interpreter, the solvers use it only
+ * for the last iterations near a root, when double precision stalls.
+ *
+ * Constants are taken exactly as the parser stored them, as doubles, so the
+ * function evaluated is the same one the double interpreter evaluates.
+ * Domain errors follow the parser and make the whole result undefined.
+ */
+public class BigEvaluator {
+
+  private final Program program;
+  private final BigDecimal[] registers;
+
+  public BigEvaluator(Program program)
+  {
+    this.program = program;
+    registers = new BigDecimal[program.size()];
+  }
+
+  /**
+   * Evaluates the program for the given value of slot 0.
+   * @param x value of the variable
+   * @param mc precision of the operations
+   * @return BigDecimal, the result or null if it is undefined at x
+   */
+  public BigDecimal evaluate(BigDecimal x, MathContext mc)
+  {
+    return evaluate(new BigDecimal[] { x }, mc);
+  }
+
+  /**
+   * Evaluates the program taking the value of the variable in slot i from
+   * env[i].
+   * @param env values of the variables
+   * @param mc precision of the operations
+   * @return BigDecimal, the result or null if it is undefined there
+   */
+  public BigDecimal evaluate(BigDecimal[] env, MathContext mc)
+  {
+    int size = program.size();
+    BigDecimal[] r = registers;
+
+    try {
+      for (int i = 0; i < size; i++) {
+        int a = program.getLeft(i);
+        int b = program.getRight(i);
+
+        switch (program.getType(i)) {
+          case Node.CONSTANT:
+            r[i] = new BigDecimal(program.getValue(i));
+            break;
+          case Node.VARIABLE:
+            int slot = program.getSlot(i);
+            if (slot < 0 || slot >= env.length)
+              return null;
+            r[i] = env[slot];
+            break;
+          case Node.NEGATE:   r[i] = r[a].negate();            break;
+          case Node.ADD:      r[i] = r[a].add(r[b], mc);       break;
+          case Node.SUBTRACT: r[i] = r[a].subtract(r[b], mc);  break;
+          case Node.MULTIPLY: r[i] = r[a].multiply(r[b], mc);  break;
+          case Node.DIVIDE:   r[i] = r[a].divide(r[b], mc);    break;
+          case Node.POWER:    r[i] = BigMath.pow(r[a], r[b], mc); break;
+          default:
+            r[i] = apply(program.getType(i), r[a], mc);
+        }
+      }
+    } catch (ArithmeticException e) {
+      // Division by zero, log of a negative number, overflow...
+      return null;
+    } catch (NumberFormatException e) {
+      // An infinite or NaN constant
+      return null;
+    }
+
+    return r[size - 1];
+  }
+
+  private static BigDecimal apply(int type, BigDecimal a, MathContext mc)
+  {
+    switch (type) {
+      case Node.FACTORIAL: return BigMath.factorial(a, mc);
+      case Node.SIN:       return BigMath.sin(a, mc);
+      case Node.COS:       return BigMath.cos(a, mc);
+      case Node.TAN:       return BigMath.tan(a, mc);
+      case Node.LOG:       return BigMath.log10(a, mc);
+      case Node.LN:        return BigMath.log(a, mc);
+      case Node.EXP:       return BigMath.exp(a, mc);
+      case Node.ABS:       return a.abs();
+      case Node.SQRT:      return BigMath.sqrt(a, mc);
+      case Node.SIGN:      return BigDecimal.valueOf(a.signum());
+    }
+
+    throw new ArithmeticException("unknown operator " + type);
+  }
+}
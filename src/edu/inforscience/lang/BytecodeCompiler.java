@@ -0,0 +1,409 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.function.DoubleUnaryOperator;
+import java.util.logging.*;
+
+/**
+ * Translates a compiled expression into a JVM class implementing
+ * DoubleUnaryOperator. The generated applyAsDouble() is straight-line code,
+ * one java.lang.Math call or arithmetic instruction per instruction of the
+ * {@link Program}, whose registers become local variables, so the JIT can
+ * inline the whole expression into the loop that calls it.
+ *
+ * Classes are defined as hidden classes of this package, they are unloaded
+ * together with the operator that uses them.
+ */
+public class BytecodeCompiler {
+
+  private static final String CLASS_NAME = "edu/inforscience/lang/CompiledExpression";
+  private static final String NODE_CLASS = "edu/inforscience/lang/Node";
+  private static final String MATH_CLASS = "java/lang/Math";
+
+  // Constant pool tags
+  private static final int UTF8         = 1;
+  private static final int DOUBLE       = 6;
+  private static final int CLASS        = 7;
+  private static final int METHOD_REF   = 10;
+  private static final int NAME_AND_TYPE = 12;
+
+  // Opcodes
+  private static final int ALOAD_0       = 0x2a;
+  private static final int DLOAD         = 0x18;
+  private static final int DLOAD_1       = 0x27;
+  private static final int DSTORE        = 0x39;
+  private static final int WIDE          = 0xc4;
+  private static final int DCONST_0      = 0x0e;
+  private static final int DCONST_1      = 0x0f;
+  private static final int BIPUSH        = 0x10;
+  private static final int LDC2_W        = 0x14;
+  private static final int DADD          = 0x63;
+  private static final int DSUB          = 0x67;
+  private static final int DMUL          = 0x6b;
+  private static final int DDIV          = 0x6f;
+  private static final int DNEG          = 0x77;
+  private static final int DRETURN       = 0xaf;
+  private static final int RETURN        = 0xb1;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKESTATIC  = 0xb8;
+
+  private static final int MAX_CODE_LENGTH = 65535;
+  private static final int MAX_LOCALS      = 65535;
+  private static final int MAX_STACK       = 5; // operator code + 2 doubles
+
+  private static Logger logger = Logger.getLogger("edu.inforscience.lang");
+
+  private ByteArrayOutputStream pool;
+  private DataOutputStream poolWriter;
+  private HashMap<String, Integer> poolIndex;
+  private int poolCount;
+
+  private ByteArrayOutputStream code;
+  private DataOutputStream codeWriter;
+
+  /**
+   * Compiles expression into a DoubleUnaryOperator backed by a generated
+   * class.
+   * @param expression the expression to compile
+   * @return DoubleUnaryOperator, the compiled expression or null if the
+   *         class could not be generated or defined by this JVM, callers
+   *         should fall back to the interpreter in that case
+   */
+  public static DoubleUnaryOperator compile(Expression expression)
+  {
+    try {
+      byte[] bytes = new BytecodeCompiler().generate(expression.getProgram());
+      if (bytes == null)
+        return null;
+
+      MethodHandles.Lookup lookup = MethodHandles.lookup()
+          .defineHiddenClass(bytes, true);
+      MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(),
+          MethodType.methodType(void.class));
+
+      return (DoubleUnaryOperator)constructor.invoke();
+    } catch (Throwable t) {
+      logger.info("bytecode compilation not available: " + t);
+      return null;
+    }
+  }
+
+  /**
+   * Generates the class file for program.
+   * @param program the compiled expression
+   * @return byte[], the class file or null if the method would be too long
+   */
+  private byte[] generate(Program program) throws IOException
+  {
+    pool = new ByteArrayOutputStream();
+    poolWriter = new DataOutputStream(pool);
+    poolIndex = new HashMap<String, Integer>();
+    poolCount = 1;
+
+    int thisClass = classEntry(CLASS_NAME);
+    int superClass = classEntry("java/lang/Object");
+    int operator = classEntry("java/util/function/DoubleUnaryOperator");
+    int objectInit = methodEntry("java/lang/Object", "<init>", "()V");
+    int initName = utf8Entry("<init>");
+    int initType = utf8Entry("()V");
+    int applyName = utf8Entry("applyAsDouble");
+    int applyType = utf8Entry("(D)D");
+    int codeName = utf8Entry("Code");
+
+    // Constructor
+    code = new ByteArrayOutputStream();
+    codeWriter = new DataOutputStream(code);
+    codeWriter.writeByte(ALOAD_0);
+    codeWriter.writeByte(INVOKESPECIAL);
+    codeWriter.writeShort(objectInit);
+    codeWriter.writeByte(RETURN);
+    byte[] initCode = code.toByteArray();
+
+    // applyAsDouble(x)
+    code = new ByteArrayOutputStream();
+    codeWriter = new DataOutputStream(code);
+    int maxLocals = local(program.size());
+    if (maxLocals > MAX_LOCALS)
+      return null;
+
+    for (int i = 0; i < program.size(); i++) {
+      if (i + 1 < program.size() && isLeaf(program, i))
+        continue; // loaded where it is used
+
+      emit(program, i);
+      if (i + 1 < program.size())
+        localInstruction(DSTORE, local(i));
+    }
+    codeWriter.writeByte(DRETURN);
+    byte[] applyCode = code.toByteArray();
+
+    if (applyCode.length > MAX_CODE_LENGTH || poolCount > 0xffff)
+      return null;
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0xcafebabe);
+    out.writeShort(0);
+    out.writeShort(52);
+    out.writeShort(poolCount);
+    out.write(pool.toByteArray());
+    out.writeShort(0x0031); // public final super
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    out.writeShort(1);
+    out.writeShort(operator);
+    out.writeShort(0); // no fields
+    out.writeShort(2);
+    writeMethod(out, initName, initType, codeName, 1, 1, initCode);
+    writeMethod(out, applyName, applyType, codeName, MAX_STACK, maxLocals,
+                applyCode);
+    out.writeShort(0); // no class attributes
+
+    return bytes.toByteArray();
+  }
+
+  private void writeMethod(DataOutputStream out, int name, int type, int codeName,
+                           int maxStack, int maxLocals, byte[] body)
+    throws IOException
+  {
+    out.writeShort(0x0001); // public
+    out.writeShort(name);
+    out.writeShort(type);
+    out.writeShort(1);
+    out.writeShort(codeName);
+    out.writeInt(12 + body.length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(body.length);
+    out.write(body);
+    out.writeShort(0); // no exception table
+    out.writeShort(0); // no code attributes
+  }
+
+  /**
+   * Emits the code that leaves the value of instruction i on the operand
+   * stack, its operands are already stored in local variables.
+   * @param program the program being translated
+   * @param i index of the instruction
+   */
+  private void emit(Program program, int i) throws IOException
+  {
+    int type = program.getType(i);
+
+    switch (type) {
+      case Node.CONSTANT:
+        emitConstant(program.getValue(i));
+        return;
+
+      case Node.VARIABLE:
+        if (program.getSlot(i) == 0)
+          codeWriter.writeByte(DLOAD_1);
+        else
+          emitConstant(Double.NaN);
+        return;
+
+      case Node.NEGATE:
+        load(program, program.getLeft(i));
+        codeWriter.writeByte(DNEG);
+        return;
+
+      case Node.SIN:
+      case Node.COS:
+      case Node.TAN:
+      case Node.EXP:
+      case Node.ABS:
+        load(program, program.getLeft(i));
+        invokeStatic(MATH_CLASS, Node.functionName(type), "(D)D");
+        return;
+
+      case Node.ADD:
+      case Node.SUBTRACT:
+      case Node.MULTIPLY:
+      case Node.DIVIDE:
+        load(program, program.getLeft(i));
+        load(program, program.getRight(i));
+        codeWriter.writeByte(arithmeticOpcode(type));
+        return;
+    }
+
+    // Operations with domain checks go through Node.apply(), which the JIT
+    // folds for the constant operator code.
+    codeWriter.writeByte(BIPUSH);
+    codeWriter.writeByte(type);
+    load(program, program.getLeft(i));
+    if (program.getRight(i) < 0) {
+      invokeStatic(NODE_CLASS, "apply", "(ID)D");
+    } else {
+      load(program, program.getRight(i));
+      invokeStatic(NODE_CLASS, "apply", "(IDD)D");
+    }
+  }
+
+  /**
+   * Pushes the value of register i, leaves are emitted in place and other
+   * registers read from their local variable.
+   */
+  private void load(Program program, int i) throws IOException
+  {
+    if (isLeaf(program, i))
+      emit(program, i);
+    else
+      localInstruction(DLOAD, local(i));
+  }
+
+  private void localInstruction(int opcode, int index) throws IOException
+  {
+    if (index > 0xff) {
+      codeWriter.writeByte(WIDE);
+      codeWriter.writeByte(opcode);
+      codeWriter.writeShort(index);
+    } else {
+      codeWriter.writeByte(opcode);
+      codeWriter.writeByte(index);
+    }
+  }
+
+  /**
+   * Returns the local variable that holds register i, after this (0) and
+   * x (1 and 2).
+   */
+  private static int local(int i)
+  {
+    return 3 + 2 * i;
+  }
+
+  private static boolean isLeaf(Program program, int i)
+  {
+    int type = program.getType(i);
+    return type == Node.CONSTANT || type == Node.VARIABLE;
+  }
+
+  private void emitConstant(double value) throws IOException
+  {
+    long bits = Double.doubleToRawLongBits(value);
+    if (bits == Double.doubleToRawLongBits(0.0)) {
+      codeWriter.writeByte(DCONST_0);
+    } else if (bits == Double.doubleToRawLongBits(1.0)) {
+      codeWriter.writeByte(DCONST_1);
+    } else {
+      codeWriter.writeByte(LDC2_W);
+      codeWriter.writeShort(doubleEntry(value));
+    }
+  }
+
+  private void invokeStatic(String owner, String name, String descriptor)
+    throws IOException
+  {
+    codeWriter.writeByte(INVOKESTATIC);
+    codeWriter.writeShort(methodEntry(owner, name, descriptor));
+  }
+
+  private static int arithmeticOpcode(int type)
+  {
+    switch (type) {
+      case Node.ADD:      return DADD;
+      case Node.SUBTRACT: return DSUB;
+      case Node.MULTIPLY: return DMUL;
+      default:            return DDIV;
+    }
+  }
+
+  // Constant pool
+
+  private int utf8Entry(String value) throws IOException
+  {
+    String key = "U" + value;
+    Integer index = poolIndex.get(key);
+    if (index != null)
+      return index;
+
+    poolWriter.writeByte(UTF8);
+    poolWriter.writeUTF(value);
+    return addEntry(key, 1);
+  }
+
+  private int classEntry(String name) throws IOException
+  {
+    String key = "C" + name;
+    Integer index = poolIndex.get(key);
+    if (index != null)
+      return index;
+
+    int nameIndex = utf8Entry(name);
+    poolWriter.writeByte(CLASS);
+    poolWriter.writeShort(nameIndex);
+    return addEntry(key, 1);
+  }
+
+  private int doubleEntry(double value) throws IOException
+  {
+    long bits = Double.doubleToRawLongBits(value);
+    String key = "D" + bits;
+    Integer index = poolIndex.get(key);
+    if (index != null)
+      return index;
+
+    poolWriter.writeByte(DOUBLE);
+    poolWriter.writeLong(bits);
+    return addEntry(key, 2);
+  }
+
+  private int methodEntry(String owner, String name, String descriptor)
+    throws IOException
+  {
+    String key = "M" + owner + "." + name + descriptor;
+    Integer index = poolIndex.get(key);
+    if (index != null)
+      return index;
+
+    int ownerIndex = classEntry(owner);
+    int nameIndex = utf8Entry(name);
+    int typeIndex = utf8Entry(descriptor);
+
+    String nameAndTypeKey = "N" + name + descriptor;
+    Integer nameAndType = poolIndex.get(nameAndTypeKey);
+    if (nameAndType == null) {
+      poolWriter.writeByte(NAME_AND_TYPE);
+      poolWriter.writeShort(nameIndex);
+      poolWriter.writeShort(typeIndex);
+      nameAndType = addEntry(nameAndTypeKey, 1);
+    }
+
+    poolWriter.writeByte(METHOD_REF);
+    poolWriter.writeShort(ownerIndex);
+    poolWriter.writeShort(nameAndType);
+    return addEntry(key, 1);
+  }
+
+  private int addEntry(String key, int size)
+  {
+    int index = poolCount;
+    poolIndex.put(key, index);
+    poolCount += size;
+    return index;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import java.util.logging.*;
+
+/**
+ * Applies operators to whole columns of values, used by the batch evaluation
+ * of {@link Expression}. This class is the portable scalar version, when the
+ * jdk.incubator.vector module is present load() returns a subclass that
+ * works on SIMD registers instead.
+ */
+class ColumnKernel {
+
+  private static Logger logger = Logger.getLogger("edu.inforscience.lang");
+
+  /**
+   * Returns the fastest kernel available in the running JVM. The vector
+   * kernel can be disabled with -Dnumeth.vector=false.
+   * @return ColumnKernel, the kernel to use
+   */
+  static ColumnKernel load()
+  {
+    if (!"false".equals(System.getProperty("numeth.vector"))) {
+      try {
+        Class<?> type = Class.forName("edu.inforscience.lang.VectorKernel");
+        return (ColumnKernel)type.getDeclaredConstructor().newInstance();
+      } catch (Throwable t) {
+        // Module not resolved, run with --add-modules jdk.incubator.vector
+        logger.fine("vector kernel not available: " + t);
+      }
+    }
+
+    return new ColumnKernel();
+  }
+
+  /**
+   * Returns the kernel of the fast tier: the vector kernel when it can be
+   * loaded, since it is already the fastest, or else a {@link FastKernel}.
+   * @return ColumnKernel, a kernel that trades a few ulp for speed
+   */
+  static ColumnKernel loadFast()
+  {
+    ColumnKernel kernel = load();
+    return kernel.getClass() == ColumnKernel.class ? new FastKernel() : kernel;
+  }
+
+  /**
+   * Replaces a[offset..offset+length) with the result of a unary operator.
+   * @param type operator code
+   * @param a operands and results
+   * @param offset first element
+   * @param length number of elements
+   */
+  public void apply(int type, double[] a, int offset, int length)
+  {
+    int end = offset + length;
+
+    switch (type) {
+      case Node.NEGATE:
+        for (int i = offset; i < end; i++) a[i] = -a[i];
+        break;
+      case Node.SIN:
+        for (int i = offset; i < end; i++) a[i] = Math.sin(a[i]);
+        break;
+      case Node.COS:
+        for (int i = offset; i < end; i++) a[i] = Math.cos(a[i]);
+        break;
+      case Node.EXP:
+        for (int i = offset; i < end; i++) a[i] = Math.exp(a[i]);
+        break;
+      case Node.ABS:
+        for (int i = offset; i < end; i++) a[i] = Math.abs(a[i]);
+        break;
+      default:
+        for (int i = offset; i < end; i++) a[i] = Node.apply(type, a[i]);
+    }
+  }
+
+  /**
+   * Replaces a[offset + i] with a[offset + i] (op) b[i] for i < length.
+   * @param type operator code
+   * @param a left operands and results
+   * @param offset first element of a
+   * @param b right operands
+   * @param length number of elements
+   */
+  public void apply(int type, double[] a, int offset, double[] b, int length)
+  {
+    switch (type) {
+      case Node.ADD:
+        for (int i = 0; i < length; i++) a[offset + i] += b[i];
+        break;
+      case Node.SUBTRACT:
+        for (int i = 0; i < length; i++) a[offset + i] -= b[i];
+        break;
+      case Node.MULTIPLY:
+        for (int i = 0; i < length; i++) a[offset + i] *= b[i];
+        break;
+      case Node.DIVIDE:
+        for (int i = 0; i < length; i++) a[offset + i] /= b[i];
+        break;
+      default:
+        for (int i = 0; i < length; i++)
+          a[offset + i] = Node.apply(type, a[offset + i], b[i]);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+/**
+ * Symbolic differentiation of expression trees. The result is simplified
+ * with {@link Simplifier} and shares subtrees with the original expression,
+ * e.g. d/dx exp(u) reuses the node of exp(u), so once compiled the common
+ * parts are computed only once.
+ */
+public class Derivative {
+
+  private static final Node ZERO = Node.constant(0);
+  private static final Node ONE  = Node.constant(1);
+  private static final Node TWO  = Node.constant(2);
+
+  /**
+   * Returns the derivative of expression with respect to its variable.
+   * @param expression the expression to differentiate
+   * @return Expression, the derivative
+   */
+  public static Expression derive(Expression expression)
+  {
+    Node root = derive(expression.getRoot(), 0);
+    return new Expression(Simplifier.simplify(root), expression.getVariables());
+  }
+
+  /**
+   * Returns the partial derivative of expression with respect to one of its
+   * variables.
+   * @param expression the expression to differentiate
+   * @param variable name of the variable
+   * @return Expression, the derivative, zero if variable is not one of the
+   *         variables of expression
+   */
+  public static Expression derive(Expression expression, String variable)
+  {
+    int slot = expression.slotOf(variable);
+    // Unbound variables have slot -1 too, they must not match
+    if (slot < 0)
+      return new Expression(ZERO, expression.getVariables());
+
+    Node root = derive(expression.getRoot(), slot);
+    return new Expression(Simplifier.simplify(root), expression.getVariables());
+  }
+
+  /**
+   * Returns the derivative of node with respect to the variable in slot.
+   * @param node root of the tree
+   * @param slot slot of the variable, at least 0
+   * @return Node, the derivative, not simplified
+   */
+  public static Node derive(Node node, int slot)
+  {
+    Node u = node.getLeft();
+    Node v = node.getRight();
+
+    switch (node.getType()) {
+      case Node.CONSTANT:
+        return ZERO;
+
+      case Node.VARIABLE:
+        return node.getSlot() == slot ? ONE : ZERO;
+
+      case Node.NEGATE:
+        return negate(derive(u, slot));
+
+      case Node.ADD:
+        return add(derive(u, slot), derive(v, slot));
+
+      case Node.SUBTRACT:
+        return subtract(derive(u, slot), derive(v, slot));
+
+      case Node.MULTIPLY:
+        // (uv)' = u'v + uv'
+        return add(multiply(derive(u, slot), v), multiply(u, derive(v, slot)));
+
+      case Node.DIVIDE: {
+        // (u/v)' = (u'v - uv')/v^2
+        Node numerator = subtract(multiply(derive(u, slot), v),
+                                  multiply(u, derive(v, slot)));
+        return divide(numerator, Node.binary(Node.MULTIPLY, v, v));
+      }
+
+      case Node.POWER: {
+        Node du = derive(u, slot);
+        Node dv = derive(v, slot);
+
+        if (isZero(dv)) {
+          // (u^c)' = c u^(c-1) u'
+          Node exponent = Node.binary(Node.SUBTRACT, v, ONE);
+          return multiply(multiply(v, Node.binary(Node.POWER, u, exponent)), du);
+        }
+
+        // (u^v)' = u^v (v' ln(u) + v u'/u)
+        Node log = Node.unary(Node.LN, u);
+        return multiply(node, add(multiply(dv, log),
+                                  multiply(v, divide(du, u))));
+      }
+
+      case Node.FACTORIAL:
+        // Piecewise constant, the parser truncates the argument
+        return ZERO;
+
+      case Node.SIN:
+        return multiply(Node.unary(Node.COS, u), derive(u, slot));
+
+      case Node.COS:
+        return multiply(negate(Node.unary(Node.SIN, u)), derive(u, slot));
+
+      case Node.TAN: {
+        Node cos = Node.unary(Node.COS, u);
+        return divide(derive(u, slot), Node.binary(Node.MULTIPLY, cos, cos));
+      }
+
+      case Node.LOG:
+        return divide(derive(u, slot),
+                      multiply(u, Node.constant(Math.log(10))));
+
+      case Node.LN:
+        return divide(derive(u, slot), u);
+
+      case Node.EXP:
+        return multiply(node, derive(u, slot));
+
+      case Node.ABS:
+        return multiply(Node.unary(Node.SIGN, u), derive(u, slot));
+
+      case Node.SQRT:
+        return divide(derive(u, slot), multiply(TWO, node));
+
+      case Node.SIGN:
+        return ZERO;
+    }
+
+    return Node.constant(Double.NaN);
+  }
+
+  // The helpers below drop terms that are zero or one by construction, e.g.
+  // the 0*v in (uv)' when u is constant. Unlike Simplifier they may do this
+  // for any operand, the zeros are exact symbolic results.
+
+  private static Node add(Node a, Node b)
+  {
+    if (isZero(a)) return b;
+    if (isZero(b)) return a;
+    return Node.binary(Node.ADD, a, b);
+  }
+
+  private static Node subtract(Node a, Node b)
+  {
+    if (isZero(b)) return a;
+    if (isZero(a)) return negate(b);
+    return Node.binary(Node.SUBTRACT, a, b);
+  }
+
+  private static Node multiply(Node a, Node b)
+  {
+    if (isZero(a) || isZero(b)) return ZERO;
+    if (isOne(a)) return b;
+    if (isOne(b)) return a;
+    return Node.binary(Node.MULTIPLY, a, b);
+  }
+
+  private static Node divide(Node a, Node b)
+  {
+    if (isZero(a)) return ZERO;
+    if (isOne(b)) return a;
+    return Node.binary(Node.DIVIDE, a, b);
+  }
+
+  private static Node negate(Node a)
+  {
+    if (isZero(a)) return ZERO;
+    return Node.unary(Node.NEGATE, a);
+  }
+
+  private static boolean isZero(Node node)
+  {
+    return node.getType() == Node.CONSTANT && node.getValue() == 0;
+  }
+
+  private static boolean isOne(Node node)
+  {
+    return node.getType() == Node.CONSTANT && node.getValue() == 1;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import edu.inforscience.math.DoubleDouble;
+
+/**
+ * Evaluates compiled programs in double-double arithmetic, about 32 digits,
+ * see {@link DoubleDouble}. Registers are kept in two arrays of doubles so
+ * an evaluation allocates nothing; an evaluator is therefore not thread
+ * safe, each solver creates its own.
+ *
+ * Domain errors follow the parser and give NaN, like the double interpreter.
+ */
+public class DoubleDoubleEvaluator {
+
+  private final Program program;
+  private final double[] high;
+  private final double[] low;
+  private final double[] r;
+
+  public DoubleDoubleEvaluator(Program program)
+  {
+    this.program = program;
+    high = new double[program.size()];
+    low = new double[program.size()];
+    r = new double[2];
+  }
+
+  /**
+   * Evaluates the program for x = hi + lo in slot 0.
+   * @param hi high order part of x
+   * @param lo low order part of x
+   * @param result receives the high order part of f(x) in result[0] and the
+   *               low order part in result[1], NaN if f is undefined at x
+   */
+  public void evaluate(double hi, double lo, double[] result)
+  {
+    int size = program.size();
+
+    for (int i = 0; i < size; i++) {
+      int a = program.getLeft(i);
+      int b = program.getRight(i);
+
+      switch (program.getType(i)) {
+        case Node.CONSTANT:
+          r[0] = program.getValue(i);
+          r[1] = 0;
+          break;
+        case Node.VARIABLE:
+          r[0] = program.getSlot(i) == 0 ? hi : Double.NaN;
+          r[1] = program.getSlot(i) == 0 ? lo : 0;
+          break;
+        case Node.NEGATE:
+          r[0] = -high[a];
+          r[1] = -low[a];
+          break;
+        case Node.ADD:
+          DoubleDouble.add(high[a], low[a], high[b], low[b], r);
+          break;
+        case Node.SUBTRACT:
+          DoubleDouble.subtract(high[a], low[a], high[b], low[b], r);
+          break;
+        case Node.MULTIPLY:
+          DoubleDouble.multiply(high[a], low[a], high[b], low[b], r);
+          break;
+        case Node.DIVIDE:
+          DoubleDouble.divide(high[a], low[a], high[b], low[b], r);
+          break;
+        case Node.POWER:
+          if (Double.isNaN(high[a]) || (high[a] < 0 && !isInteger(b)))
+            r[0] = Double.NaN;
+          else
+            DoubleDouble.pow(high[a], low[a], high[b], low[b], r);
+          break;
+        default:
+          apply(program.getType(i), high[a], low[a]);
+      }
+
+      high[i] = r[0];
+      low[i] = Double.isNaN(r[0]) ? 0 : r[1];
+    }
+
+    result[0] = high[size - 1];
+    result[1] = low[size - 1];
+  }
+
+  private boolean isInteger(int i)
+  {
+    return low[i] == 0 && high[i] == Math.rint(high[i]);
+  }
+
+  private void apply(int type, double ah, double al)
+  {
+    switch (type) {
+      case Node.FACTORIAL:
+        if (Double.isNaN(ah))
+          r[0] = Double.NaN;
+        else
+          DoubleDouble.factorial(ah, r);
+        return;
+      case Node.SIN:
+        DoubleDouble.sin(ah, al, r);
+        return;
+      case Node.COS:
+        DoubleDouble.cos(ah, al, r);
+        return;
+      case Node.TAN:
+        DoubleDouble.tan(ah, al, r);
+        return;
+      case Node.LOG:
+        if (ah > 0)
+          DoubleDouble.log10(ah, al, r);
+        else
+          r[0] = Double.NaN;
+        return;
+      case Node.LN:
+        if (ah > 0)
+          DoubleDouble.log(ah, al, r);
+        else
+          r[0] = Double.NaN;
+        return;
+      case Node.EXP:
+        DoubleDouble.exp(ah, al, r);
+        return;
+      case Node.ABS:
+        r[0] = ah < 0 ? -ah : ah;
+        r[1] = ah < 0 ? -al : al;
+        return;
+      case Node.SQRT:
+        if (ah >= 0)
+          DoubleDouble.sqrt(ah, al, r);
+        else
+          r[0] = Double.NaN;
+        return;
+      case Node.SIGN:
+        r[0] = Math.signum(ah);
+        r[1] = 0;
+        return;
+    }
+
+    r[0] = Double.NaN;
+  }
+}
@@ -0,0 +1,300 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A compiled, immutable expression. The text is parsed once into a tree of
+ * {@link Node}s which is then flattened into a {@link Program}, every
+ * evaluation runs the program, no tokenizing or string handling is involved.
+ */
+public final class Expression implements DoubleUnaryOperator {
+  /** Number of points evaluated together by the batch methods. */
+  public static final int BLOCK_SIZE = 256;
+
+  private static final ColumnKernel KERNEL = ColumnKernel.load();
+  private static final ColumnKernel FAST_KERNEL = ColumnKernel.loadFast();
+
+  private final Node root;
+  private final String[] variables;
+  private final Program program;
+
+  /**
+   * Creates an expression from an already compiled tree.
+   * @param root root of the tree
+   * @param variable name of the variable bound to slot 0
+   */
+  public Expression(Node root, String variable)
+  {
+    this(root, new String[] {variable});
+  }
+
+  /**
+   * Creates an expression of several variables from an already compiled
+   * tree.
+   * @param root root of the tree
+   * @param variables names of the variables, variables[i] is bound to slot i
+   */
+  public Expression(Node root, String[] variables)
+  {
+    this(root, variables, Program.compile(root));
+  }
+
+  /**
+   * Creates an expression whose program is already known, program must be
+   * the result of Program.compile(root).
+   */
+  Expression(Node root, String[] variables, Program program)
+  {
+    this.root = root;
+    this.variables = variables.clone();
+    this.program = program;
+  }
+
+  public Node getRoot()
+  {
+    return root;
+  }
+
+  /**
+   * Returns the name of the independent variable, the one in slot 0.
+   * @return String, the variable name or null if the expression has none
+   */
+  public String getVariable()
+  {
+    return variables.length > 0 ? variables[0] : null;
+  }
+
+  public String[] getVariables()
+  {
+    return variables.clone();
+  }
+
+  /**
+   * Returns the slot a variable is bound to.
+   * @param name variable name
+   * @return int, the slot or -1 if name is not a variable of the expression
+   */
+  public int slotOf(String name)
+  {
+    for (int i = 0; i < variables.length; i++)
+      if (variables[i].equals(name))
+        return i;
+
+    return -1;
+  }
+
+  /**
+   * Evaluates the expression with the value of the variable in slot i taken
+   * from env[i]. The other methods evaluate only slot 0 and treat the rest
+   * of variables as undefined.
+   * @param env values of the variables, in slot order
+   * @return double, the result or NaN if the expression is undefined there
+   */
+  public double evaluate(double[] env)
+  {
+    return program.evaluate(env);
+  }
+
+  /**
+   * Replaces a variable by a constant, e.g. binding a = 2 in a*x^2 gives
+   * 2*x^2. The result is simplified again and the variables after the
+   * bound one move down one slot.
+   * @param name variable to bind
+   * @param value value of the variable
+   * @return Expression, the new expression or this one if name is not one
+   *         of its variables
+   */
+  public Expression bind(String name, double value)
+  {
+    int slot = slotOf(name);
+    if (slot < 0)
+      return this;
+
+    String[] remaining = new String[variables.length - 1];
+    for (int i = 0, j = 0; i < variables.length; i++)
+      if (i != slot)
+        remaining[j++] = variables[i];
+
+    Node bound = bind(root, slot, Node.constant(value));
+    return new Expression(Simplifier.simplify(bound), remaining);
+  }
+
+  private static Node bind(Node node, int slot, Node constant)
+  {
+    if (node.getType() == Node.VARIABLE) {
+      if (node.getSlot() == slot)
+        return constant;
+      if (node.getSlot() > slot)
+        return Node.variable(node.getName(), node.getSlot() - 1);
+      return node;
+    }
+
+    if (node.isLeaf())
+      return node;
+    if (node.isUnary())
+      return Node.unary(node.getType(), bind(node.getLeft(), slot, constant));
+
+    return Node.binary(node.getType(), bind(node.getLeft(), slot, constant),
+                       bind(node.getRight(), slot, constant));
+  }
+
+  public Program getProgram()
+  {
+    return program;
+  }
+
+  /**
+   * Evaluates the expression for the given value of its variable.
+   * @param x value of the variable
+   * @return double, the result or NaN if the expression is undefined at x
+   */
+  public double evaluate(double x)
+  {
+    return program.evaluate(x);
+  }
+
+  /**
+   * Evaluates the expression and its first, and optionally second,
+   * derivative in one pass, see {@link Program#evaluate(double, double[])}.
+   * @param x value of the variable
+   * @param jet receives f(x), f'(x) and, if it has room, f''(x)
+   */
+  public void evaluate(double x, double[] jet)
+  {
+    program.evaluate(x, jet);
+  }
+
+  /**
+   * Encloses the values of the expression for x in [lo, hi] with interval
+   * arithmetic, see {@link IntervalEvaluator}.
+   * @param lo start of the interval
+   * @param hi end of the interval
+   * @param bounds receives the lower and upper bound
+   * @return boolean, false if the expression is undefined on all of [lo, hi]
+   */
+  public boolean enclose(double lo, double hi, double[] bounds)
+  {
+    return new IntervalEvaluator(program).enclose(lo, hi, bounds);
+  }
+
+  /**
+   * Evaluates the expression in double-double arithmetic, see
+   * {@link DoubleDoubleEvaluator}.
+   * @param hi high order part of x
+   * @param lo low order part of x
+   * @param result receives the high and low order parts of the result
+   */
+  public void evaluate(double hi, double lo, double[] result)
+  {
+    new DoubleDoubleEvaluator(program).evaluate(hi, lo, result);
+  }
+
+  /**
+   * Evaluates the expression with BigDecimal arithmetic, see
+   * {@link BigEvaluator}.
+   * @param x value of the variable
+   * @param mc precision of the operations
+   * @return BigDecimal, the result or null if it is undefined at x
+   */
+  public BigDecimal evaluate(BigDecimal x, MathContext mc)
+  {
+    return new BigEvaluator(program).evaluate(x, mc);
+  }
+
+  @Override
+  public double applyAsDouble(double x)
+  {
+    return program.evaluate(x);
+  }
+
+  /**
+   * Evaluates the expression at every point of xs. The work is done column
+   * by column: each instruction of the program is applied to a whole block
+   * of points in a tight loop before moving on to the next one.
+   * @param xs values of the variable
+   * @param out receives f(xs[i]) in out[i], NaN where it is undefined
+   * @param count number of points to evaluate
+   */
+  public void evaluate(double[] xs, double[] out, int count)
+  {
+    double[][] columns = new double[program.getColumnCount()][BLOCK_SIZE];
+
+    for (int offset = 0; offset < count; offset += BLOCK_SIZE) {
+      int length = Math.min(BLOCK_SIZE, count - offset);
+      program.evaluate(xs, offset, out, offset, length, columns, KERNEL);
+    }
+  }
+
+  /**
+   * Evaluates the expression at count evenly spaced points, start + i*step.
+   * @param start first point
+   * @param step distance between consecutive points
+   * @param count number of points
+   * @param out receives f(start + i*step) in out[i]
+   */
+  public void evaluate(double start, double step, int count, double[] out)
+  {
+    evaluate(start, step, count, out, false);
+  }
+
+  /**
+   * Evaluates the expression at count evenly spaced points, start + i*step.
+   * @param start first point
+   * @param step distance between consecutive points
+   * @param count number of points
+   * @param out receives f(start + i*step) in out[i]
+   * @param fast true to use the fast kernels of sin, cos, exp and log,
+   *        which are a few ulp away from java.lang.Math
+   */
+  public void evaluate(double start, double step, int count, double[] out,
+                       boolean fast)
+  {
+    ColumnKernel kernel = fast ? FAST_KERNEL : KERNEL;
+    double[][] columns = new double[program.getColumnCount()][BLOCK_SIZE];
+    double[] xs = new double[BLOCK_SIZE];
+
+    for (int offset = 0; offset < count; offset += BLOCK_SIZE) {
+      int length = Math.min(BLOCK_SIZE, count - offset);
+      for (int i = 0; i < length; i++)
+        xs[i] = start + (offset + i) * step;
+
+      program.evaluate(xs, 0, out, offset, length, columns, kernel);
+    }
+  }
+
+  /**
+   * Returns a listing of the compiled program, useful to check which
+   * subexpressions are shared.
+   * @return String, one instruction per line
+   */
+  public String dump()
+  {
+    return toString() + "\n" + program;
+  }
+
+  @Override
+  public String toString()
+  {
+    return root.toString();
+  }
+}
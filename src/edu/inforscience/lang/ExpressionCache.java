@@ -0,0 +1,233 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of compiled expressions shared by the whole application.
+ * Entries are keyed by the text of the expression, with the spaces the
+ * parser ignores removed, and by the names of the variables; invalid texts
+ * are cached too, together with the parser's error code. When the cache is
+ * full the least recently used entry is dropped.
+ */
+public final class ExpressionCache {
+  /**
+   * Number of entries kept by the shared cache unless the numeth.cache.size
+   * system property says otherwise.
+   */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private static final ExpressionCache shared =
+    new ExpressionCache(Integer.getInteger("numeth.cache.size",
+                                           DEFAULT_CAPACITY));
+
+  private final int capacity;
+  private final LinkedHashMap<String, Entry> entries;
+  private long hits;
+  private long misses;
+
+  /**
+   * Result of compiling one text, expression is null when it isn't valid.
+   */
+  private static final class Entry {
+    final Expression expression;
+    final int errorCode;
+
+    Entry(Expression expression, int errorCode)
+    {
+      this.expression = expression;
+      this.errorCode = errorCode;
+    }
+  }
+
+  public ExpressionCache(int capacity)
+  {
+    this.capacity = capacity;
+    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+      {
+        return size() > ExpressionCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the cache used by Parser.validate() and Function.
+   * @return ExpressionCache, the shared instance
+   */
+  public static ExpressionCache getShared()
+  {
+    return shared;
+  }
+
+  /**
+   * Compiles text, or returns the expression compiled for an equivalent
+   * text before.
+   * @param text the expression, e.g. "x^2 - 2"
+   * @param variable name of the independent variable
+   * @return Expression, the compiled expression or null if text is not valid
+   */
+  public Expression compile(String text, String variable)
+  {
+    return lookup(text, new String[] {variable}).expression;
+  }
+
+  /**
+   * Same as compile(text, variable) for an expression of several variables.
+   * @param text the expression, e.g. "a*x^2 + k"
+   * @param variables names of the variables in slot order
+   * @return Expression, the compiled expression or null if text is not valid
+   */
+  public Expression compile(String text, String[] variables)
+  {
+    return lookup(text, variables).expression;
+  }
+
+  /**
+   * Tests if text is a valid expression.
+   * @param text the expression to examine
+   * @return int, Parser.SUCCESS or the error code reported by the parser
+   */
+  public int validate(String text)
+  {
+    return lookup(text, new String[] {"x"}).errorCode;
+  }
+
+  private Entry lookup(String text, String[] variables)
+  {
+    String key = String.join(",", variables) + ":" + normalize(text);
+
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        hits++;
+        return entry;
+      }
+      misses++;
+    }
+
+    // Parse without holding the lock, two threads may compile the same text
+    // at once but both get equivalent expressions
+    Parser parser = new Parser();
+    Expression expression = parser.compile(text, variables);
+    Entry entry = new Entry(expression, parser.getErrorCode());
+
+    synchronized (this) {
+      entries.put(key, entry);
+    }
+
+    return entry;
+  }
+
+  /**
+   * Removes the spaces that can't change how text is parsed, so "x^2 - 2"
+   * and "x^2-2" share an entry. Spaces between two letters or digits
+   * separate tokens and are kept, as those around the sign of an exponent,
+   * since "1e - 5" is not a number but "1e-5" is.
+   * @param text the expression
+   * @return String, the normalized text
+   */
+  static String normalize(String text)
+  {
+    int length = text.length();
+    StringBuilder result = new StringBuilder(length);
+
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c != ' ') {
+        result.append(c);
+        continue;
+      }
+
+      int next = i;
+      while (next < length && text.charAt(next) == ' ')
+        next++;
+
+      if (result.length() > 0 && next < length &&
+          separates(result, text.charAt(next)))
+        result.append(' ');
+      i = next - 1;
+    }
+
+    return result.toString();
+  }
+
+  private static boolean separates(StringBuilder before, char next)
+  {
+    int last = before.length() - 1;
+    char previous = before.charAt(last);
+
+    if (!Parser.isDelimiter(previous) && !Parser.isDelimiter(next))
+      return true;
+    if (isExponent(previous) && isSign(next))
+      return true;
+
+    return isSign(previous) && last > 0 && isExponent(before.charAt(last - 1));
+  }
+
+  private static boolean isExponent(char c)
+  {
+    return c == 'e' || c == 'E';
+  }
+
+  private static boolean isSign(char c)
+  {
+    return c == '+' || c == '-';
+  }
+
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * Removes every entry and resets the counters.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+    hits = 0;
+    misses = 0;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "ExpressionCache[" + entries.size() + "/" + capacity + ", " +
+           hits + " hits, " + misses + " misses]";
+  }
+}
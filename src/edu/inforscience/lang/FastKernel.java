@@ -0,0 +1,61 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+/**
+ * Column kernel of the fast tier, sin, cos, exp and the logarithms use the
+ * kernels of {@link edu.inforscience.math.Math} instead of java.lang.Math.
+ * They are within a few ulp, which is plenty for plotting.
+ */
+class FastKernel extends ColumnKernel {
+
+  @Override
+  public void apply(int type, double[] a, int offset, int length)
+  {
+    int end = offset + length;
+
+    switch (type) {
+      case Node.SIN:
+        for (int i = offset; i < end; i++)
+          a[i] = edu.inforscience.math.Math.fastSin(a[i]);
+        break;
+      case Node.COS:
+        for (int i = offset; i < end; i++)
+          a[i] = edu.inforscience.math.Math.fastCos(a[i]);
+        break;
+      case Node.EXP:
+        for (int i = offset; i < end; i++)
+          a[i] = edu.inforscience.math.Math.fastExp(a[i]);
+        break;
+      case Node.LN:
+        // Parser reports ln(t) as undefined for t <= 0
+        for (int i = offset; i < end; i++)
+          a[i] = a[i] > 0 ? edu.inforscience.math.Math.fastLog(a[i])
+                          : Double.NaN;
+        break;
+      case Node.LOG:
+        for (int i = offset; i < end; i++)
+          a[i] = a[i] > 0 ? edu.inforscience.math.Math.fastLog10(a[i])
+                          : Double.NaN;
+        break;
+      default:
+        super.apply(type, a, offset, length);
+    }
+  }
+}
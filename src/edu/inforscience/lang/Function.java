@@ -19,32 +19,152 @@
 package edu.inforscience.lang;
 
 import java.awt.*;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
 
 /**
- * A basic function class.
+ * A function of one or more variables, the first one is the independent
+ * variable used by evaluate(x), the solvers and the plotter. The
+ * definition is compiled once when the function is created and never
+ * changes afterwards, evaluation keeps no state in the object, so one
+ * Function can be evaluated from any number of threads at once. Errors
+ * are reported per call, see {@link #evaluate(double, int[])}. Only the
+ * display attributes, color and active, can change after construction.
  */
 public class Function {
-  private String name;
-  private String variable;
-  private String definition;
-  private int degree;
-  private boolean active;
-  private Parser parser;
-  private Color color;
+  public static final int INTERPRETER = 0x00000001;
+  public static final int BYTECODE    = 0x00000002;
 
+  /**
+   * Symbolic derivatives whose program is larger than this many times the
+   * program of the function, plus a small allowance, are not used.
+   */
+  public static final int MAX_DERIVATIVE_GROWTH = 4;
 
-  public Function()
+  private static volatile int defaultBackend = BYTECODE;
+
+  private final String name;
+  private final String[] variables;
+  private final String definition;
+  private final int degree;
+  private final Expression expression;
+  private final Polynomial polynomial;
+  private final int errorCode;
+  private final boolean bound;
+  private final DoubleUnaryOperator evaluator;
+  private final int backend;
+  private volatile boolean active;
+  private volatile Color color;
+  private volatile Function derivative;
+  private volatile boolean derivativeComputed;
+
+
+  public Function(String definition, String name)
   {
-    parser = new Parser();
-    setActive(true);
+    this(definition, new String[] {"x"}, name, defaultBackend);
   }
 
-  public Function(String definition, String name)
+  /**
+   * Creates a function compiling definition through the shared
+   * {@link ExpressionCache}.
+   * @param definition the expression, e.g. "x^2 - 2"
+   * @param variable name of the independent variable
+   * @param name function name
+   * @param backend INTERPRETER or BYTECODE, see getBackend()
+   */
+  public Function(String definition, String variable, String name,
+                  int backend)
+  {
+    this(definition, new String[] {variable}, name, backend);
+  }
+
+  /**
+   * Creates a function of several variables, e.g. a*x^2 + k with variables
+   * {"x", "a", "k"}. Use bind() to fix the parameters before solving or
+   * plotting it.
+   * @param definition the expression
+   * @param variables names of the variables, the first one is the
+   *                  independent variable
+   * @param name function name
+   * @param backend INTERPRETER or BYTECODE, see getBackend()
+   */
+  public Function(String definition, String[] variables, String name,
+                  int backend)
+  {
+    this(ExpressionCache.getShared().compile(definition, variables),
+         definition, variables, name, backend);
+  }
+
+  /**
+   * Creates a function from an already compiled expression.
+   * @param expression the compiled definition
+   * @param name function name
+   */
+  public Function(Expression expression, String name)
+  {
+    this(expression, expression.toString(), expression.getVariables(), name,
+         defaultBackend);
+  }
+
+  private Function(Expression expression, String definition,
+                   String[] variables, String name, int backend)
+  {
+    this(expression, definition, variables, name, backend,
+         expression == null ? ExpressionCache.getShared().validate(definition)
+                            : Parser.SUCCESS);
+  }
+
+  /**
+   * Creates a function whose definition was already compiled, or rejected
+   * with errorCode, e.g. when it is read back by {@link FunctionLibrary}.
+   */
+  Function(Expression expression, String definition, String[] variables,
+           String name, int backend, int errorCode)
+  {
+    this.expression = expression;
+    this.definition = definition;
+    this.variables = variables.clone();
+    this.name = name;
+    this.active = true;
+    this.errorCode = errorCode;
+
+    if (expression == null) {
+      bound = false;
+      polynomial = null;
+    } else {
+      bound = isBound(expression.getProgram());
+      polynomial = Polynomial.recognize(expression);
+    }
+    degree = polynomial != null ? polynomial.getDegree() : -1;
+
+    DoubleUnaryOperator compiled = null;
+    if (expression != null && backend == BYTECODE && !isHorner())
+      compiled = BytecodeCompiler.compile(expression);
+
+    if (isHorner()) {
+      this.backend = backend;
+      evaluator = polynomial;
+    } else if (compiled != null) {
+      this.backend = BYTECODE;
+      evaluator = compiled;
+    } else {
+      this.backend = INTERPRETER;
+      evaluator = expression;
+    }
+  }
+
+  /**
+   * Tests if every variable of program is the independent variable.
+   */
+  private static boolean isBound(Program program)
   {
-    parser = new Parser(definition);
-    setDefinition(definition);
-    setActive(true);
-    setName(name);
+    for (int i = 0; i < program.size(); i++)
+      if (program.getType(i) == Node.VARIABLE && program.getSlot(i) != 0)
+        return false;
+
+    return true;
   }
 
   public Color getColor()
@@ -70,12 +190,12 @@ public class Function {
 
   public String getVariable()
   {
-    return variable;
+    return variables.length > 0 ? variables[0] : null;
   }
 
-  public void setVariable(String variable)
+  public String[] getVariables()
   {
-    this.variable = variable;
+    return variables.clone();
   }
 
   public String getName()
@@ -83,34 +203,316 @@ public class Function {
     return name;
   }
 
-  public void setName(String name)
-  {
-    this.name = name;
-  }
-
   public String getDefinition() {
     return definition;
   }
 
-  public void setDefinition(String definition) {
-    this.definition = definition;
+  /**
+   * Returns the compiled form of the definition.
+   * @return Expression, the compiled definition or null if it is not valid
+   */
+  public Expression getExpression() {
+    return expression;
+  }
+
+  /**
+   * Tells why the definition could not be compiled.
+   * @return int, Parser.SUCCESS if the definition is valid, otherwise the
+   *         error code reported by the parser
+   */
+  public int getErrorCode() {
+    return errorCode;
   }
 
+  /**
+   * Returns the degree of the function if it is a polynomial.
+   * @return int, the degree or -1 if the function is not a polynomial
+   */
   public int getDegree() {
     return degree;
   }
 
-  public void setDegree(int degree) {
-    this.degree = degree;
+  /**
+   * Returns the coefficients of the function if it is a polynomial.
+   * @return Polynomial, the polynomial or null if the function is not one
+   */
+  public Polynomial getPolynomial() {
+    return polynomial;
   }
 
+  /**
+   * Tests if evaluations use Horner's scheme on the coefficients, which is
+   * done for polynomials written as a sum of monomials.
+   */
+  private boolean isHorner()
+  {
+    return polynomial != null && polynomial.isExpanded();
+  }
+
+  /**
+   * Evaluates the function at x.
+   * @param x value of the variable
+   * @return double, f(x) or NaN if the function is not defined at x
+   */
   public double evaluate(double x)
   {
-    parser.setVariable("x", x);
-    double fx = parser.evaluate();
-    if (parser.getErrorCode() != Parser.SUCCESS)
+    if (evaluator == null)
       return Double.NaN;
-    return fx;
+    return evaluator.applyAsDouble(x);
+  }
+
+  /**
+   * Evaluates the function at x and tells why the result is NaN, if it is.
+   * The reason is only worked out when the result is NaN, so this is as
+   * fast as evaluate(x) otherwise.
+   * @param x value of the variable
+   * @param status receives in status[0] Parser.SUCCESS, the error code of
+   *               the definition if it is not valid, UNDEFINED_VARIABLE if
+   *               it uses variables other than the independent one, or
+   *               UNDEFINED_VALUE if f is not defined at x
+   * @return double, f(x) or NaN
+   */
+  public double evaluate(double x, int[] status)
+  {
+    double y = evaluate(x);
+
+    if (!Double.isNaN(y))
+      status[0] = Parser.SUCCESS;
+    else if (evaluator == null)
+      status[0] = errorCode;
+    else if (!bound)
+      status[0] = Parser.UNDEFINED_VARIABLE;
+    else
+      status[0] = Parser.UNDEFINED_VALUE;
+
+    return y;
+  }
+
+  /**
+   * Evaluates the function with the value of its i-th variable taken from
+   * env[i]. This always runs the interpreter, the bytecode backend only
+   * handles the independent variable.
+   * @param env values of the variables, in the order they were declared
+   * @return double, the result or NaN if the function is not defined there
+   */
+  public double evaluate(double[] env)
+  {
+    if (expression == null)
+      return Double.NaN;
+    return expression.evaluate(env);
+  }
+
+  /**
+   * Returns this function with a variable replaced by a constant, see
+   * {@link Expression#bind(String, double)}. Binding every variable but the
+   * first gives an ordinary function of one variable that can be solved or
+   * plotted.
+   * @param variable name of the variable
+   * @param value value of the variable
+   * @return Function, the new function or this one if variable is not one of
+   *         its variables
+   */
+  public Function bind(String variable, double value)
+  {
+    if (expression == null || expression.slotOf(variable) < 0)
+      return this;
+
+    Expression bound = expression.bind(variable, value);
+    Function f = new Function(bound, bound.toString(), bound.getVariables(),
+                              name, backend);
+    f.setColor(color);
+    f.setActive(active);
+    return f;
+  }
+
+  /**
+   * Evaluates f(x) together with f'(x) and, if jet has three or more
+   * elements, f''(x) using forward-mode automatic differentiation. Unlike
+   * getDerivative() this never builds a new expression, so it works for
+   * functions of any size.
+   * @param x value of the variable
+   * @param jet receives f(x), f'(x) and optionally f''(x)
+   */
+  public void evaluate(double x, double[] jet)
+  {
+    if (expression == null)
+      Arrays.fill(jet, Double.NaN);
+    else
+      expression.evaluate(x, jet);
+  }
+
+  /**
+   * Computes bounds for f(x) over x in [lo, hi] using interval arithmetic,
+   * when they don't contain zero f has no roots in the interval.
+   * @param lo start of the interval
+   * @param hi end of the interval
+   * @param bounds receives the lower bound in bounds[0] and the upper bound
+   *               in bounds[1]
+   * @return boolean, false if f is undefined on the whole interval
+   */
+  public boolean enclose(double lo, double hi, double[] bounds)
+  {
+    if (expression == null)
+      return false;
+    return expression.enclose(lo, hi, bounds);
+  }
+
+  /**
+   * Evaluates the function in double-double arithmetic, about 32 digits.
+   * Solvers that do it repeatedly should keep their own
+   * {@link DoubleDoubleEvaluator} instead.
+   * @param hi high order part of x
+   * @param lo low order part of x
+   * @param result receives the high and low order parts of f(x), NaN if it
+   *               is undefined at x
+   */
+  public void evaluate(double hi, double lo, double[] result)
+  {
+    if (expression == null)
+      Arrays.fill(result, Double.NaN);
+    else
+      expression.evaluate(hi, lo, result);
+  }
+
+  /**
+   * Evaluates the function with BigDecimal arithmetic, see
+   * {@link BigEvaluator}.
+   * @param x value of the variable
+   * @param mc precision of the operations
+   * @return BigDecimal, f(x) or null if it is undefined at x
+   */
+  public BigDecimal evaluate(BigDecimal x, MathContext mc)
+  {
+    if (expression == null)
+      return null;
+    return expression.evaluate(x, mc);
+  }
+
+  /**
+   * Evaluates the function at every point of xs, see
+   * {@link Expression#evaluate(double[], double[], int)}.
+   * @param xs values of the variable
+   * @param out receives f(xs[i]) in out[i], must be at least as long as xs
+   */
+  public void evaluate(double[] xs, double[] out)
+  {
+    if (expression == null)
+      Arrays.fill(out, 0, xs.length, Double.NaN);
+    else if (isHorner())
+      polynomial.evaluate(xs, out, xs.length);
+    else
+      expression.evaluate(xs, out, xs.length);
+  }
+
+  /**
+   * Evaluates the function at count evenly spaced points.
+   * @param start first point
+   * @param step distance between consecutive points
+   * @param count number of points
+   * @param out receives f(start + i*step) in out[i]
+   */
+  public void evaluate(double start, double step, int count, double[] out)
+  {
+    evaluate(start, step, count, out, false);
+  }
+
+  /**
+   * Evaluates the function at count evenly spaced points, optionally with
+   * the fast elementary function kernels. Polynomials are always evaluated
+   * with Horner's rule, which needs no elementary functions.
+   * @param start first point
+   * @param step distance between consecutive points
+   * @param count number of points
+   * @param out receives f(start + i*step) in out[i]
+   * @param fast true to trade a few ulp of accuracy for speed
+   */
+  public void evaluate(double start, double step, int count, double[] out,
+                       boolean fast)
+  {
+    if (expression == null)
+      Arrays.fill(out, 0, count, Double.NaN);
+    else if (isHorner())
+      polynomial.evaluate(start, step, count, out);
+    else
+      expression.evaluate(start, step, count, out, fast);
+  }
+
+  /**
+   * Returns the exact derivative of this function, obtained symbolically
+   * with {@link Derivative} and compiled like any other function. It is
+   * built the first time it is requested, by one thread only.
+   * @return Function, f'(x) or null if the function is not valid or its
+   *         derivative grows beyond MAX_DERIVATIVE_GROWTH times its size
+   */
+  public Function getDerivative()
+  {
+    if (!derivativeComputed) {
+      synchronized (this) {
+        if (!derivativeComputed) {
+          derivative = deriveFunction();
+          derivativeComputed = true;
+        }
+      }
+    }
+
+    return derivative;
+  }
+
+  private Function deriveFunction()
+  {
+    if (expression == null)
+      return null;
+
+    Expression d = Derivative.derive(expression);
+    int limit = MAX_DERIVATIVE_GROWTH * expression.getProgram().size() + 16;
+    if (d.getProgram().size() > limit)
+      return null;
+
+    return new Function(d, d.toString(), variables, name + "'", backend);
+  }
+
+  /**
+   * Tells how the function is evaluated. BYTECODE generates a class for the
+   * definition, if that is not possible in the running JVM the function
+   * silently falls back to INTERPRETER. Polynomials written as a sum of
+   * monomials are evaluated with Horner's scheme whatever the backend.
+   * @return int, INTERPRETER or BYTECODE
+   */
+  public int getBackend()
+  {
+    return backend;
+  }
+
+  /**
+   * Returns this function evaluated with another backend.
+   * @param backend INTERPRETER or BYTECODE
+   * @return Function, a function with the same definition, name and display
+   *         attributes
+   */
+  public Function withBackend(int backend)
+  {
+    if (backend == this.backend)
+      return this;
+
+    Function f = new Function(expression, definition, variables, name,
+                              backend);
+    f.setColor(color);
+    f.setActive(active);
+    return f;
+  }
+
+  public static int getDefaultBackend()
+  {
+    return defaultBackend;
+  }
+
+  /**
+   * Sets the backend used by functions created from now on.
+   * @param backend INTERPRETER or BYTECODE
+   */
+  public static void setDefaultBackend(int backend)
+  {
+    defaultBackend = backend;
   }
 
   @Override
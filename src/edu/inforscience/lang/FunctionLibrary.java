@@ -0,0 +1,357 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary format for libraries of compiled functions. Loading a library
+ * decodes the programs directly, nothing is parsed again.
+ *
+ * A library is a header followed by one record per function, all numbers
+ * big endian:
+ * <pre>
+ *   header:  int MAGIC, int VERSION, int number of records
+ *   record:  int length of the rest of the record
+ *            string name, string definition, byte backend, int error code
+ *            short number of variables, string variables...
+ *            string name of the unbound variables, empty if there are none
+ *            int number of constants, double constants...
+ *            int number of instructions, instructions...
+ *   instruction: byte type, int a, int b
+ * </pre>
+ * Strings are an int byte count followed by UTF-8. In an instruction a and
+ * b are the registers read by operators and functions, -1 if unused; for
+ * constants a is the index in the constant pool and for variables it is the
+ * slot. Functions that don't compile have no instructions, only their
+ * error code. Display attributes, color and active, are not stored.
+ */
+public final class FunctionLibrary {
+  public static final int MAGIC = 0x4e4d4c42; // "NMLB"
+  public static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 12;
+  private static final int INSTRUCTION_SIZE = 9;
+
+
+  private FunctionLibrary()
+  {
+  }
+
+  /**
+   * Writes functions to a file, replacing its contents.
+   * @param file destination
+   * @param functions functions to store
+   * @throws IOException if the file can't be written
+   */
+  public static void write(Path file, List<Function> functions)
+      throws IOException
+  {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      write(channel, functions);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes functions to a channel, one buffer per record.
+   * @param channel destination
+   * @param functions functions to store
+   * @throws IOException if the channel can't be written
+   */
+  public static void write(WritableByteChannel channel,
+                           List<Function> functions) throws IOException
+  {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(functions.size());
+    header.flip();
+    writeFully(channel, header);
+
+    for (Function f : functions) {
+      ByteBuffer record = encode(f);
+      record.flip();
+      writeFully(channel, record);
+    }
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer b)
+      throws IOException
+  {
+    while (b.hasRemaining())
+      channel.write(b);
+  }
+
+  private static ByteBuffer encode(Function f)
+  {
+    byte[] name = bytes(f.getName());
+    byte[] definition = bytes(f.getDefinition());
+    String[] variables = f.getVariables();
+    byte[][] variableNames = new byte[variables.length][];
+    Expression expression = f.getExpression();
+    Program program = expression == null ? null : expression.getProgram();
+
+    int size = 4 + 4 + name.length + 4 + definition.length + 1 + 4 + 2;
+    for (int i = 0; i < variables.length; i++) {
+      variableNames[i] = bytes(variables[i]);
+      size += 4 + variableNames[i].length;
+    }
+
+    int constants = 0;
+    int instructions = program == null ? 0 : program.size();
+    for (int i = 0; i < instructions; i++)
+      if (program.getType(i) == Node.CONSTANT)
+        constants++;
+
+    String unbound = expression == null ? null
+                                        : unboundName(expression.getRoot());
+    byte[] unboundName = bytes(unbound == null ? "" : unbound);
+    size += 4 + unboundName.length + 4 + 8 * constants + 4
+          + INSTRUCTION_SIZE * instructions;
+
+    ByteBuffer record = ByteBuffer.allocate(size);
+    record.putInt(size - 4);
+    putString(record, name);
+    putString(record, definition);
+    record.put((byte)f.getBackend());
+    record.putInt(f.getErrorCode());
+    record.putShort((short)variables.length);
+    for (byte[] v : variableNames)
+      putString(record, v);
+    putString(record, unboundName);
+
+    record.putInt(constants);
+    for (int i = 0; i < instructions; i++)
+      if (program.getType(i) == Node.CONSTANT)
+        record.putDouble(program.getValue(i));
+
+    record.putInt(instructions);
+    for (int i = 0, constant = 0; i < instructions; i++) {
+      int type = program.getType(i);
+      record.put((byte)type);
+
+      if (type == Node.CONSTANT)
+        record.putInt(constant++).putInt(-1);
+      else if (type == Node.VARIABLE)
+        record.putInt(program.getSlot(i)).putInt(-1);
+      else
+        record.putInt(program.getLeft(i)).putInt(program.getRight(i));
+    }
+
+    return record;
+  }
+
+  /**
+   * Returns the name of the first variable not bound to a slot, they all
+   * share one register since they all evaluate to NaN.
+   */
+  private static String unboundName(Node node)
+  {
+    if (node.getType() == Node.VARIABLE)
+      return node.getSlot() < 0 ? node.getName() : null;
+    if (node.isLeaf())
+      return null;
+
+    String name = unboundName(node.getLeft());
+    if (name == null && node.isBinary())
+      name = unboundName(node.getRight());
+    return name;
+  }
+
+  private static byte[] bytes(String s)
+  {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void putString(ByteBuffer b, byte[] s)
+  {
+    b.putInt(s.length).put(s);
+  }
+
+  /**
+   * Reads a library by mapping the file in memory.
+   * @param file a file written by write()
+   * @return ArrayList&lt;Function&gt;, the functions in the order they were
+   *         written
+   * @throws IOException if the file can't be read or is not a library
+   */
+  public static ArrayList<Function> read(Path file) throws IOException
+  {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return read(buffer);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Reads a library from a channel that can't be mapped, e.g. a socket.
+   * @param channel source, read until its end
+   * @return ArrayList&lt;Function&gt;, the functions
+   * @throws IOException if the channel can't be read or is not a library
+   */
+  public static ArrayList<Function> read(ReadableByteChannel channel)
+      throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    while (channel.read(buffer) >= 0) {
+      if (!buffer.hasRemaining()) {
+        ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+    }
+
+    buffer.flip();
+    return read(buffer);
+  }
+
+  /**
+   * Decodes a library from the buffer's position to its limit.
+   * @param buffer the encoded library
+   * @return ArrayList&lt;Function&gt;, the functions
+   * @throws IOException if the buffer doesn't hold a valid library
+   */
+  public static ArrayList<Function> read(ByteBuffer buffer) throws IOException
+  {
+    ByteBuffer b = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+
+    try {
+      if (b.getInt() != MAGIC)
+        throw new IOException("not a function library");
+      int version = b.getInt();
+      if (version != VERSION)
+        throw new IOException("unsupported library version " + version);
+
+      int count = b.getInt();
+      ArrayList<Function> functions = new ArrayList<Function>();
+      for (int i = 0; i < count; i++) {
+        int length = b.getInt();
+        int end = b.position() + length;
+        functions.add(decode(b));
+
+        if (b.position() != end)
+          throw new IOException("corrupt record " + i);
+      }
+
+      return functions;
+    } catch (RuntimeException e) {
+      // Buffer underflows and out of range values of a truncated file
+      IOException error = new IOException("corrupt function library");
+      error.initCause(e);
+      throw error;
+    }
+  }
+
+  private static Function decode(ByteBuffer b) throws IOException
+  {
+    String name = getString(b);
+    String definition = getString(b);
+    int backend = b.get();
+    int errorCode = b.getInt();
+
+    String[] variables = new String[count(b, b.getShort(), 4)];
+    for (int i = 0; i < variables.length; i++)
+      variables[i] = getString(b);
+    String unbound = getString(b);
+
+    double[] constants = new double[count(b, b.getInt(), 8)];
+    for (int i = 0; i < constants.length; i++)
+      constants[i] = b.getDouble();
+
+    int size = count(b, b.getInt(), INSTRUCTION_SIZE);
+    if (size == 0)
+      return new Function(null, definition, variables, name, backend,
+                          errorCode);
+
+    int[] types = new int[size];
+    int[] left = new int[size];
+    int[] right = new int[size];
+    int[] slots = new int[size];
+    double[] values = new double[size];
+    String[] names = new String[size];
+
+    for (int i = 0; i < size; i++) {
+      int type = b.get();
+      int x = b.getInt();
+      int y = b.getInt();
+      types[i] = type;
+      left[i] = -1;
+      right[i] = -1;
+      slots[i] = -1;
+
+      if (type == Node.CONSTANT) {
+        values[i] = constants[x];
+      } else if (type == Node.VARIABLE) {
+        slots[i] = x < variables.length ? x : -1;
+        names[i] = x >= 0 && x < variables.length ? variables[x] : unbound;
+      } else {
+        boolean binary = type >= Node.ADD && type <= Node.POWER;
+        boolean unary = type >= Node.NEGATE && type <= Node.SIGN;
+        if (!(binary || unary) || x < 0 || x >= i
+            || (binary && (y < 0 || y >= i)) || (unary && y != -1))
+          throw new IOException("invalid instruction " + i);
+        left[i] = x;
+        right[i] = y;
+      }
+    }
+
+    Program program = Program.create(types, left, right, slots, values);
+    Expression expression =
+        new Expression(program.toTree(names), variables, program);
+    return new Function(expression, definition, variables, name, backend,
+                        errorCode);
+  }
+
+  /**
+   * Checks that a count read from b fits in the rest of the buffer, so that
+   * a corrupt one can't make us allocate huge arrays.
+   */
+  private static int count(ByteBuffer b, int count, int elementSize)
+      throws IOException
+  {
+    if (count < 0 || (long)count * elementSize > b.remaining())
+      throw new IOException("invalid count " + count);
+    return count;
+  }
+
+  private static String getString(ByteBuffer b) throws IOException
+  {
+    byte[] s = new byte[count(b, b.getInt(), 1)];
+    b.get(s);
+    return new String(s, StandardCharsets.UTF_8);
+  }
+}
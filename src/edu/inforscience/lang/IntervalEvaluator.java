@@ -0,0 +1,357 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+/**
+ * Interval arithmetic over compiled programs. Given x in [lo, hi] it computes
+ * bounds that are guaranteed to contain f(x) for every x in the interval
+ * where f is defined, so when the bounds exclude zero f has no roots there.
+ *
+ * Bounds are rounded outwards one ulp after every operation, which covers
+ * the rounding of the arithmetic operators and the one ulp error allowed to
+ * java.lang.Math. Domain errors follow the parser: points where log, ln or
+ * sqrt are undefined are dropped from the interval, and an interval on which
+ * the function is undefined everywhere is empty.
+ */
+public class IntervalEvaluator {
+
+  private static final double PI = Math.PI;
+  private static final double TWO_PI = 2 * Math.PI;
+  private static final double INF = Double.POSITIVE_INFINITY;
+
+  private final Program program;
+  private final double[] low;
+  private final double[] high;
+
+  public IntervalEvaluator(Program program)
+  {
+    this.program = program;
+    low = new double[program.size()];
+    high = new double[program.size()];
+  }
+
+  /**
+   * Encloses the range of the program for x in [lo, hi].
+   * @param lo start of the interval
+   * @param hi end of the interval
+   * @param bounds receives the lower bound in bounds[0] and the upper bound
+   *               in bounds[1]
+   * @return boolean, false if the function is undefined on the whole
+   *         interval, bounds are not set in that case
+   */
+  public boolean enclose(double lo, double hi, double[] bounds)
+  {
+    int size = program.size();
+
+    for (int i = 0; i < size; i++) {
+      int a = program.getLeft(i);
+      int b = program.getRight(i);
+
+      if ((a >= 0 && isEmpty(a)) || (b >= 0 && isEmpty(b))) {
+        setEmpty(i);
+        continue;
+      }
+
+      switch (program.getType(i)) {
+        case Node.CONSTANT:
+          set(i, program.getValue(i), program.getValue(i));
+          break;
+        case Node.VARIABLE:
+          if (program.getSlot(i) == 0)
+            set(i, lo, hi);
+          else
+            setEmpty(i);
+          break;
+        case Node.NEGATE:
+          set(i, -high[a], -low[a]);
+          break;
+        case Node.ADD:
+          set(i, down(low[a] + low[b]), up(high[a] + high[b]));
+          break;
+        case Node.SUBTRACT:
+          set(i, down(low[a] - high[b]), up(high[a] - low[b]));
+          break;
+        case Node.MULTIPLY:
+          // u*u is how the simplifier writes u^2, it is never negative
+          if (a == b)
+            square(i, low[a], high[a]);
+          else
+            multiply(i, low[a], high[a], low[b], high[b]);
+          break;
+        case Node.DIVIDE:
+          divide(i, a, b);
+          break;
+        case Node.POWER:
+          power(i, a, b);
+          break;
+        default:
+          function(i, program.getType(i), low[a], high[a]);
+      }
+
+      // NaN bounds, e.g. from inf - inf, mean nothing is known
+      if (Double.isNaN(low[i]) || Double.isNaN(high[i]))
+        set(i, -INF, INF);
+    }
+
+    int root = size - 1;
+    if (isEmpty(root))
+      return false;
+
+    bounds[0] = low[root];
+    bounds[1] = high[root];
+    return true;
+  }
+
+  private void multiply(int i, double a, double b, double c, double d)
+  {
+    double p1 = product(a, c);
+    double p2 = product(a, d);
+    double p3 = product(b, c);
+    double p4 = product(b, d);
+
+    set(i, down(Math.min(Math.min(p1, p2), Math.min(p3, p4))),
+           up(Math.max(Math.max(p1, p2), Math.max(p3, p4))));
+  }
+
+  private void square(int i, double lo, double hi)
+  {
+    if (lo >= 0)
+      set(i, down(lo * lo), up(hi * hi));
+    else if (hi <= 0)
+      set(i, down(hi * hi), up(lo * lo));
+    else
+      set(i, 0, up(Math.max(lo * lo, hi * hi)));
+  }
+
+  /**
+   * Product of two bounds, 0 * inf is 0 here since the bound of a finite
+   * factor is never reached together with an infinite one.
+   */
+  private static double product(double a, double b)
+  {
+    if (a == 0 || b == 0)
+      return 0;
+    return a * b;
+  }
+
+  private void divide(int i, int a, int b)
+  {
+    double c = low[b];
+    double d = high[b];
+
+    if (c <= 0 && d >= 0) {
+      // Division by an interval that contains zero is unbounded
+      set(i, -INF, INF);
+      return;
+    }
+
+    double q1 = low[a] / c;
+    double q2 = low[a] / d;
+    double q3 = high[a] / c;
+    double q4 = high[a] / d;
+
+    set(i, down(Math.min(Math.min(q1, q2), Math.min(q3, q4))),
+           up(Math.max(Math.max(q1, q2), Math.max(q3, q4))));
+  }
+
+  private void power(int i, int a, int b)
+  {
+    double lo = low[a];
+    double hi = high[a];
+    double p = low[b];
+
+    if (p == high[b] && p == Math.rint(p) && Math.abs(p) < 0x1p53) {
+      integerPower(i, lo, hi, p);
+      return;
+    }
+
+    if (lo < 0) {
+      if (p != high[b]) {
+        // Negative bases are defined only for integer exponents, the
+        // exponent interval may contain some, so nothing can be excluded
+        set(i, -INF, INF);
+        return;
+      }
+
+      // A fixed non integer exponent is undefined for negative bases
+      if (hi < 0) {
+        setEmpty(i);
+        return;
+      }
+      lo = 0;
+    }
+
+    // For a positive base a^b is monotone in each argument, the extremes
+    // are at the corners
+    double q = high[b];
+    double c1 = Math.pow(lo, p);
+    double c2 = Math.pow(lo, q);
+    double c3 = Math.pow(hi, p);
+    double c4 = Math.pow(hi, q);
+
+    set(i, down(Math.min(Math.min(c1, c2), Math.min(c3, c4))),
+           up(Math.max(Math.max(c1, c2), Math.max(c3, c4))));
+  }
+
+  private void integerPower(int i, double lo, double hi, double n)
+  {
+    if (n == 0) {
+      set(i, 1, 1);
+      return;
+    }
+
+    boolean even = Math.abs(n % 2) == 0;
+
+    if (n < 0 && lo <= 0 && hi >= 0) {
+      set(i, even ? 0 : -INF, INF);
+      return;
+    }
+
+    double a = Math.pow(lo, n);
+    double b = Math.pow(hi, n);
+
+    if (even && lo < 0 && hi > 0)
+      set(i, 0, up(Math.max(a, b)));
+    else
+      set(i, down(Math.min(a, b)), up(Math.max(a, b)));
+  }
+
+  private void function(int i, int type, double lo, double hi)
+  {
+    switch (type) {
+      case Node.SIN:
+        periodic(i, lo, hi, Math.sin(lo), Math.sin(hi), PI/2, -PI/2);
+        return;
+
+      case Node.COS:
+        periodic(i, lo, hi, Math.cos(lo), Math.cos(hi), 0, PI);
+        return;
+
+      case Node.TAN:
+        // Monotone between asymptotes at pi/2 + k*pi
+        if (hi - lo >= PI || contains(lo, hi, PI/2, PI))
+          set(i, -INF, INF);
+        else
+          set(i, down(Math.tan(lo)), up(Math.tan(hi)));
+        return;
+
+      case Node.EXP:
+        set(i, Math.max(0, down(Math.exp(lo))), up(Math.exp(hi)));
+        return;
+
+      case Node.LOG:
+      case Node.LN:
+        if (hi <= 0) {
+          setEmpty(i);
+        } else {
+          double l = lo <= 0 ? -INF : down(Node.apply(type, lo));
+          set(i, l, up(Node.apply(type, hi)));
+        }
+        return;
+
+      case Node.SQRT:
+        if (hi < 0)
+          setEmpty(i);
+        else
+          set(i, lo <= 0 ? 0 : down(Math.sqrt(lo)), up(Math.sqrt(hi)));
+        return;
+
+      case Node.ABS:
+        if (lo >= 0)
+          set(i, lo, hi);
+        else if (hi <= 0)
+          set(i, -hi, -lo);
+        else
+          set(i, 0, Math.max(-lo, hi));
+        return;
+
+      case Node.SIGN:
+        set(i, Math.signum(lo), Math.signum(hi));
+        return;
+
+      case Node.FACTORIAL:
+        // Non-decreasing while the result fits in a long
+        if (hi >= 21)
+          set(i, -INF, INF);
+        else
+          set(i, Node.apply(type, lo), Node.apply(type, hi));
+        return;
+    }
+
+    set(i, -INF, INF);
+  }
+
+  /**
+   * Range of sin or cos over [lo, hi], given their values at the ends and
+   * the phases where they reach 1 and -1.
+   */
+  private void periodic(int i, double lo, double hi, double flo, double fhi,
+                        double maximum, double minimum)
+  {
+    if (hi - lo >= TWO_PI) {
+      set(i, -1, 1);
+      return;
+    }
+
+    double l = contains(lo, hi, minimum, TWO_PI) ? -1 : down(Math.min(flo, fhi));
+    double h = contains(lo, hi, maximum, TWO_PI) ? 1 : up(Math.max(flo, fhi));
+    set(i, Math.max(-1, l), Math.min(1, h));
+  }
+
+  /**
+   * Tests if [lo, hi] may contain a point phase + k*period. The test errs on
+   * the side of yes, so extremes are never missed because of rounding.
+   */
+  private static boolean contains(double lo, double hi, double phase,
+                                  double period)
+  {
+    if (Math.abs(lo) > 1e15 || Math.abs(hi) > 1e15)
+      return true;
+
+    double k = Math.ceil((lo - phase)/period - 1e-9);
+    return phase + k * period <= hi + 1e-9 * Math.max(1, Math.abs(hi));
+  }
+
+  private void set(int i, double lo, double hi)
+  {
+    low[i] = lo;
+    high[i] = hi;
+  }
+
+  private void setEmpty(int i)
+  {
+    low[i] = INF;
+    high[i] = -INF;
+  }
+
+  private boolean isEmpty(int i)
+  {
+    return low[i] > high[i];
+  }
+
+  private static double down(double x)
+  {
+    return Math.nextDown(x);
+  }
+
+  private static double up(double x)
+  {
+    return Math.nextUp(x);
+  }
+}
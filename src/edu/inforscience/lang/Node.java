@@ -0,0 +1,248 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import edu.inforscience.math.Math;
+
+/**
+ * An immutable node of a compiled expression tree. Leaves are constants and
+ * variables, inner nodes are operators or functions applied to their children.
+ */
+public final class Node {
+  public static final int CONSTANT  = 0x00000001;
+  public static final int VARIABLE  = 0x00000002;
+
+  // Unary operators and functions
+  public static final int NEGATE    = 0x00000010;
+  public static final int FACTORIAL = 0x00000011;
+  public static final int SIN       = 0x00000012;
+  public static final int COS       = 0x00000013;
+  public static final int TAN       = 0x00000014;
+  public static final int LOG       = 0x00000015;
+  public static final int LN        = 0x00000016;
+  public static final int EXP       = 0x00000017;
+  public static final int ABS       = 0x00000018;
+  public static final int SQRT      = 0x00000019;
+  public static final int SIGN      = 0x0000001a; // Derivative of abs
+
+  // Binary operators
+  public static final int ADD       = 0x00000020;
+  public static final int SUBTRACT  = 0x00000021;
+  public static final int MULTIPLY  = 0x00000022;
+  public static final int DIVIDE    = 0x00000023;
+  public static final int POWER     = 0x00000024;
+
+  private final int type;
+  private final double value;
+  private final String name;
+  private final int slot;
+  private final Node left;
+  private final Node right;
+
+  private Node(int type, double value, String name, int slot,
+               Node left, Node right)
+  {
+    this.type = type;
+    this.value = value;
+    this.name = name;
+    this.slot = slot;
+    this.left = left;
+    this.right = right;
+  }
+
+  public static Node constant(double value)
+  {
+    return new Node(CONSTANT, value, null, -1, null, null);
+  }
+
+  /**
+   * Creates a variable leaf.
+   * @param name variable name
+   * @param slot index of the variable in the evaluation environment, -1 if the
+   *             variable is not bound
+   * @return Node, the new leaf
+   */
+  public static Node variable(String name, int slot)
+  {
+    return new Node(VARIABLE, 0, name, slot, null, null);
+  }
+
+  public static Node unary(int type, Node operand)
+  {
+    return new Node(type, 0, null, -1, operand, null);
+  }
+
+  public static Node binary(int type, Node left, Node right)
+  {
+    return new Node(type, 0, null, -1, left, right);
+  }
+
+  /**
+   * Returns the operator code for a function name known by the parser.
+   * @param function function name, e.g. "sin"
+   * @return int, the operator code or -1 if function is unknown
+   */
+  public static int functionType(String function)
+  {
+    if (function.equals("sin"))  return SIN;
+    if (function.equals("cos"))  return COS;
+    if (function.equals("tan"))  return TAN;
+    if (function.equals("log"))  return LOG;
+    if (function.equals("ln"))   return LN;
+    if (function.equals("exp"))  return EXP;
+    if (function.equals("abs"))  return ABS;
+    if (function.equals("sqrt")) return SQRT;
+    if (function.equals("sign")) return SIGN;
+
+    return -1;
+  }
+
+  public int getType()
+  {
+    return type;
+  }
+
+  public double getValue()
+  {
+    return value;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public int getSlot()
+  {
+    return slot;
+  }
+
+  public Node getLeft()
+  {
+    return left;
+  }
+
+  public Node getRight()
+  {
+    return right;
+  }
+
+  public boolean isLeaf()
+  {
+    return type == CONSTANT || type == VARIABLE;
+  }
+
+  public boolean isUnary()
+  {
+    return type >= NEGATE && type < ADD;
+  }
+
+  public boolean isBinary()
+  {
+    return type >= ADD;
+  }
+
+  /**
+   * Applies a unary operator to a value. Domain errors, which the parser
+   * reports as UNDEFINED_VALUE, are mapped to NaN.
+   * @param type operator code
+   * @param a operand
+   * @return double, the result of the operation
+   */
+  public static double apply(int type, double a)
+  {
+    switch (type) {
+      case NEGATE:    return -a;
+      case FACTORIAL: return Double.isNaN(a) ? Double.NaN
+                                             : Math.factorial((int)a);
+      case SIN:       return java.lang.Math.sin(a);
+      case COS:       return java.lang.Math.cos(a);
+      case TAN:       return Math.tan(a);
+      case LOG:       return a > 0 ? Math.log10(a) : Double.NaN;
+      case LN:        return a > 0 ? Math.log(a) : Double.NaN;
+      case EXP:       return Math.exp(a);
+      case ABS:       return Math.abs(a);
+      case SQRT:      return a >= 0 ? Math.sqrt(a) : Double.NaN;
+      case SIGN:      return java.lang.Math.signum(a);
+    }
+
+    return Double.NaN;
+  }
+
+  /**
+   * Applies a binary operator to a pair of values.
+   * @param type operator code
+   * @param a left operand
+   * @param b right operand
+   * @return double, the result of the operation
+   */
+  public static double apply(int type, double a, double b)
+  {
+    switch (type) {
+      case ADD:      return a + b;
+      case SUBTRACT: return a - b;
+      case MULTIPLY: return a * b;
+      case DIVIDE:   return a / b;
+      case POWER:    return Double.isNaN(a) ? Double.NaN
+                                            : java.lang.Math.pow(a, b);
+    }
+
+    return Double.NaN;
+  }
+
+  @Override
+  public String toString()
+  {
+    switch (type) {
+      case CONSTANT:  return Double.toString(value);
+      case VARIABLE:  return name;
+      case NEGATE:    return "(-" + left + ")";
+      case FACTORIAL: return "(" + left + ")!";
+      case ADD:       return "(" + left + " + " + right + ")";
+      case SUBTRACT:  return "(" + left + " - " + right + ")";
+      case MULTIPLY:  return "(" + left + " * " + right + ")";
+      case DIVIDE:    return "(" + left + " / " + right + ")";
+      case POWER:     return "(" + left + ")^(" + right + ")";
+    }
+
+    return functionName(type) + "(" + left + ")";
+  }
+
+  /**
+   * Returns the name the parser uses for a function operator.
+   * @param type operator code
+   * @return String, function name or null if type is not a function
+   */
+  public static String functionName(int type)
+  {
+    switch (type) {
+      case SIN:  return "sin";
+      case COS:  return "cos";
+      case TAN:  return "tan";
+      case LOG:  return "log";
+      case LN:   return "ln";
+      case EXP:  return "exp";
+      case ABS:  return "abs";
+      case SQRT: return "sqrt";
+      case SIGN: return "sign";
+    }
+
+    return null;
+  }
+}
@@ -19,28 +19,47 @@
 package edu.inforscience.lang;
 
 import java.io.*;
-import java.util.regex.*;
-import java.util.HashMap;
-import java.util.TreeSet;
-import java.util.logging.*;
+import java.util.Arrays;
 import edu.inforscience.math.Math;
 
 public class Parser {
 
-  private StringBuffer expression;
-  private String token;
+  // The current token is expression[tokenStart, tokenEnd), it is empty at
+  // the end of the expression
+  private char[] expression;
+  private int length;
+  private int tokenStart;
+  private int tokenEnd;
   private int tokenType;
+  private char delimiter;
+  private int function;
+  private double tokenValue;
   private int errorCode;
   private int index;
   private boolean isValidationMode;
+  private String[] compiledVariables;
 
-  private HashMap<String, Double> variables;
-  private HashMap<String, Double> constants;
+  private String[] variableNames;
+  private double[] variableValues;
+  private int variableCount;
 
-
-  private TreeSet<String> functions;
   private PrintWriter writer;
 
+  private static final String[] FUNCTION_NAMES = {
+    "sin", "cos", "tan", "log", "ln", "exp", "abs", "sqrt", "sign"
+  };
+  private static final String[] CONSTANT_NAMES = {"pi", "e"};
+  private static final double[] CONSTANT_VALUES = {Math.PI, Math.E};
+
+  /** Largest mantissa for which every smaller integer is a double. */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  /** Powers of ten that are exactly representable as doubles. */
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+    1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
   public static final double EPS                = 1e-8;
 
   public static final int DELIMITER             = 0x00000001;
@@ -60,8 +79,6 @@ public class Parser {
   public static final int UNDEFINED_VARIABLE    = 0x00000007;
   public static final int UNDEFINED_VALUE       = 0x00000008;
 
-  private static Logger logger = Logger.getLogger("edu.inforscience.lang");
-
   public Parser()
   {
     initialize();
@@ -71,8 +88,8 @@ public class Parser {
   }
   public Parser(String expression)
   {
-    this.expression = new StringBuffer(expression);
     initialize();
+    setExpression(expression);
 
     // Utility
     writer = new PrintWriter(System.out, true);
@@ -80,26 +97,33 @@ public class Parser {
 
 
   /**
-   * Initialize data members, add predefined constants and functions.
+   * Initialize data members, the predefined constants and functions are
+   * kept in CONSTANT_NAMES and FUNCTION_NAMES.
    */
   private void initialize()
   {
-    variables = new HashMap<String, Double>();
-    constants = new HashMap<String, Double>();
-    functions = new TreeSet<String>();
-
-    constants.put("pi", Math.PI);
-    constants.put("e", Math.E);
-
-    String[] temp = new String[] {"sin", "cos", "tan", "log", "ln", "exp",
-                                  "abs", "sqrt"};
-
-    for (String function : temp)
-      functions.add(function);
+    variableNames = new String[4];
+    variableValues = new double[4];
+    variableCount = 0;
+    expression = new char[32];
+    length = 0;
 
     setErrorCode(SUCCESS);
   }
 
+  /**
+   * Copies text into the buffer scanned by the lexer, which is only
+   * reallocated when text doesn't fit.
+   */
+  private void setExpression(String text)
+  {
+    length = text.length();
+    if (expression.length < length)
+      expression = new char[java.lang.Math.max(length, 2 * expression.length)];
+    text.getChars(0, length, expression, 0);
+    index = 0;
+  }
+
   /**
    * Sets a variable and their corresponding value, useful when we need evaluate
    * a function with a specific parameter.
@@ -108,53 +132,74 @@ public class Parser {
    */
   public void setVariable(String variable, double value)
   {
-    variables.put(variable, value);
+    for (int i = 0; i < variableCount; i++) {
+      if (variableNames[i].equals(variable)) {
+        variableValues[i] = value;
+        return;
+      }
+    }
+
+    if (variableCount == variableNames.length) {
+      variableNames = Arrays.copyOf(variableNames, 2 * variableCount);
+      variableValues = Arrays.copyOf(variableValues, 2 * variableCount);
+    }
+
+    variableNames[variableCount] = variable;
+    variableValues[variableCount] = value;
+    variableCount++;
   }
 
   /**
-   * Returns the next token in the expression, number, variable, operator, etc.
-   * @return String, the next token or empty string if we have finished.
+   * Moves to the next token in the expression, number, variable, operator,
+   * etc. Tokens are not copied, they are kept as a range of the expression
+   * together with their kind, the operator for delimiters, the function
+   * type for functions and the value for numbers and constants.
+   * @return boolean, false if we have finished or the token is not valid
    */
   private boolean nextToken()
   {
-    int length = expression.length();
-    token = "";
     tokenType = UNDEFINED;
+    tokenStart = tokenEnd = index;
+    delimiter = 0;
 
     if (index >= length)
       return false;
-    while (index < length && expression.charAt(index) == ' ')
+    while (index < length && expression[index] == ' ')
       index++;
+    tokenStart = index;
 
-    if (index < length && isDelimiter(expression.charAt(index))) {
+    if (index < length && isDelimiter(expression[index])) {
       tokenType = DELIMITER;
-      token += expression.charAt(index);
+      delimiter = expression[index];
       index++;
-    } else if (index < length && Character.isLetter(expression.charAt(index))) {
-      while (index < length) {
-        if (isDelimiter(expression.charAt(index))) {
-          break;
-        } else if (!Character.isLetter(expression.charAt(index))) {
+    } else if (index < length && Character.isLetter(expression[index])) {
+      while (index < length && !isDelimiter(expression[index])) {
+        if (!Character.isLetter(expression[index]))
           setErrorCode(INVALID_VARIABLE_NAME);
-        }
-
-        token += expression.charAt(index);
         index++;
       }
 
-      if (functions.contains(token))
-        tokenType = FUNCTION;
-      else if (constants.get(token) != null)
-        tokenType = CONSTANT;
-      else
-        tokenType = VARIABLE;
+      tokenEnd = index;
+      tokenType = VARIABLE;
+      for (int i = 0; i < FUNCTION_NAMES.length; i++) {
+        if (tokenEquals(FUNCTION_NAMES[i])) {
+          tokenType = FUNCTION;
+          function = Node.functionType(FUNCTION_NAMES[i]);
+        }
+      }
+      for (int i = 0; tokenType == VARIABLE && i < CONSTANT_NAMES.length; i++) {
+        if (tokenEquals(CONSTANT_NAMES[i])) {
+          tokenType = CONSTANT;
+          tokenValue = CONSTANT_VALUES[i];
+        }
+      }
 
-    } else if (index < length && Character.isDigit(expression.charAt(index))) {
+    } else if (index < length && Character.isDigit(expression[index])) {
 
       while (index < length) {
-        char at = expression.charAt(index);
+        char at = expression[index];
         if (at == '-') {
-          char prev = expression.charAt(index - 1);
+          char prev = expression[index - 1];
           if (prev != 'e' && prev != 'E')
             break;
         } else {
@@ -162,11 +207,11 @@ public class Parser {
             break;
         }
 
-        token += at;
         index++;
       }
 
-      if (!token.matches("([0-9]+([eE][+-]?[0-9]+)?)|([0-9]+[.][0-9]+([eE][+-]?[0-9]+)?)")) {
+      tokenEnd = index;
+      if (!scanNumber(tokenStart, index)) {
         setErrorCode(INVALID_NUMBER);
         writer.println("Horror!");
         return false;
@@ -175,9 +220,116 @@ public class Parser {
       tokenType = NUMBER;
     }
 
+    tokenEnd = index;
+    return true;
+  }
+
+  /**
+   * Reads the number in expression[start, end) into tokenValue. The number
+   * must have the form digits[.digits][(e|E)[+|-]digits]. When the digits fit
+   * in a double and the power of ten is exact, one multiplication or
+   * division gives the correctly rounded value (Clinger's fast path),
+   * otherwise Double.parseDouble() is used.
+   * @return boolean, true if the range is a valid number
+   */
+  private boolean scanNumber(int start, int end)
+  {
+    long mantissa = 0;
+    boolean exact = true;
+    int scale = 0;
+    int i = start;
+
+    for (; i < end && isDigit(expression[i]); i++) {
+      if (mantissa <= (MAX_EXACT_MANTISSA - 9)/10)
+        mantissa = 10 * mantissa + (expression[i] - '0');
+      else
+        exact = false;
+    }
+
+    if (i < end && expression[i] == '.') {
+      int first = ++i;
+      for (; i < end && isDigit(expression[i]); i++) {
+        if (mantissa <= (MAX_EXACT_MANTISSA - 9)/10) {
+          mantissa = 10 * mantissa + (expression[i] - '0');
+          scale--;
+        } else {
+          exact = false;
+        }
+      }
+      if (i == first)
+        return false;
+    }
+
+    int exponent = 0;
+    if (i < end && (expression[i] == 'e' || expression[i] == 'E')) {
+      i++;
+      boolean negative = false;
+      if (i < end && (expression[i] == '+' || expression[i] == '-'))
+        negative = expression[i++] == '-';
+
+      int first = i;
+      for (; i < end && isDigit(expression[i]); i++)
+        if (exponent < 100000)
+          exponent = 10 * exponent + (expression[i] - '0');
+      if (i == first)
+        return false;
+      if (negative)
+        exponent = -exponent;
+    }
+
+    if (i != end)
+      return false;
+
+    int power = scale + exponent;
+    if (mantissa == 0 && exact)
+      tokenValue = 0;
+    else if (exact && power >= 0 && power < POWERS_OF_TEN.length)
+      tokenValue = mantissa * POWERS_OF_TEN[power];
+    else if (exact && power < 0 && -power < POWERS_OF_TEN.length)
+      tokenValue = mantissa / POWERS_OF_TEN[-power];
+    else
+      tokenValue = Double.parseDouble(new String(expression, start,
+                                                 end - start));
+    return true;
+  }
+
+  private static boolean isDigit(char c)
+  {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Tests if the current token is name.
+   */
+  private boolean tokenEquals(String name)
+  {
+    if (tokenEnd - tokenStart != name.length())
+      return false;
+
+    for (int i = 0; i < name.length(); i++)
+      if (expression[tokenStart + i] != name.charAt(i))
+        return false;
+
     return true;
   }
 
+  /**
+   * Tests if the current token is the operator or parenthesis c.
+   */
+  private boolean isToken(char c)
+  {
+    return tokenType == DELIMITER && delimiter == c;
+  }
+
+  /**
+   * Tests if the expression has been consumed, that is, the current token is
+   * empty.
+   */
+  private boolean atEnd()
+  {
+    return tokenEnd == tokenStart;
+  }
+
   /**
    * Returns the error code of the previous operation.
    * @return int, 0 if all it's fine, different than zero otherwise.
@@ -218,13 +370,15 @@ public class Parser {
    * @param c a token
    * @return true if c is a delimiter, false otherwise
    */
-  private boolean isDelimiter(char c)
+  static boolean isDelimiter(char c)
   {
-    if ("+-/*%^!=() ".contains("" + c) ||
-      c == '\t' || c == '\r')
-      return true;
-
-    return false;
+    switch (c) {
+      case '+': case '-': case '/': case '*': case '%': case '^': case '!':
+      case '=': case '(': case ')': case ' ': case '\t': case '\r':
+        return true;
+      default:
+        return false;
+    }
   }
 
   /**
@@ -239,17 +393,18 @@ public class Parser {
   {
     if (getErrorCode() != SUCCESS) return 0;
 
-    String operator;
+    char operator;
     double temp;
     double result = productAndDivision();
 
-    while ((operator = token).equals("+") || operator.equals("-")) {
+    while (isToken('+') || isToken('-')) {
+      operator = delimiter;
       nextToken();
       temp = productAndDivision();
 
-      if (operator.equals("+"))
+      if (operator == '+')
         result = result + temp;
-      if (operator.equals("-"))
+      if (operator == '-')
         result = result - temp;
     }
 
@@ -269,18 +424,19 @@ public class Parser {
   {
     if (getErrorCode() != SUCCESS) return 0;
 
-    String operator;
+    char operator;
     double temp, result;
 
     result = exponentAndFactorial();
 
-    while ((operator = token).equals("*") || operator.equals("/")) {
+    while (isToken('*') || isToken('/')) {
+      operator = delimiter;
       nextToken();
       temp = exponentAndFactorial();
 
-      if (operator.equals("*"))
+      if (operator == '*')
         result = result *  temp;
-      if (operator.equals("/")) {
+      if (operator == '/') {
         result = result/temp;
       }
     }
@@ -299,11 +455,11 @@ public class Parser {
 
     double result = 0;
     result = sign();
-    if (token.equals("^")) {
+    if (isToken('^')) {
       nextToken();
       double p = exponentAndFactorial();
       result = java.lang.Math.pow(result, p);
-    } else if (token.equals("!")) {
+    } else if (isToken('!')) {
       result = Math.factorial((int)result);
       nextToken();
     }
@@ -320,16 +476,16 @@ public class Parser {
   {
     if (getErrorCode() != SUCCESS) return 0;
 
-    String operator = "";
+    char operator = 0;
     double result;
 
-    if ((tokenType == DELIMITER) && token.equals("+")  || token.equals("-")) {
-      operator = token;
+    if (isToken('+') || isToken('-')) {
+      operator = delimiter;
       nextToken();
     }
 
     result = subExpression();
-    if (operator.equals("-"))
+    if (operator == '-')
       result = -result;
 
     return result;
@@ -344,10 +500,10 @@ public class Parser {
     if (getErrorCode() != SUCCESS) return 0;
 
     double result;
-    if (token.equals("(")) {
+    if (isToken('(')) {
       nextToken();
       result = sumAndSubtraction();
-      if (!token.equals(")")) {
+      if (!isToken(')')) {
         setErrorCode(INVALID_EXPRESSION);
         return 0;
       }
@@ -368,52 +524,45 @@ public class Parser {
     if (getErrorCode() != SUCCESS) return 0;
 
     double result = 0;
-    if (tokenType == NUMBER) {
-      result = Double.parseDouble(token);
+    if (tokenType == NUMBER || tokenType == CONSTANT) {
+      result = tokenValue;
       nextToken();
     } else if (tokenType == VARIABLE) {
       if (isValidationMode()) {
         result = 0;
       } else {
-        if (!variables.containsKey(token))
+        int i = findVariable();
+        if (i < 0)
           setErrorCode(UNDEFINED_VARIABLE);
         else
-          result = variables.get(token);
+          result = variableValues[i];
       }
       nextToken();
-    } else if (tokenType == CONSTANT) {
-      result = constants.get(token);
-      nextToken();
     } else if (tokenType == FUNCTION) {
-      String function = token;
+      int function = this.function;
       nextToken();
-      if (!token.equals("(")) {
+      if (!isToken('(')) {
         setErrorCode(INVALID_FUNCTION);
         return 0;
       }
 
       double parameter = subExpression();
 
-      if (isValidationMode()) {
-        if (!functions.contains(function)) {
-          logger.info("function = " + function);
-          setErrorCode(INVALID_FUNCTION);
-        }
+      if (isValidationMode())
         return 0;
-      }
 
-      if (function.equals("sin")) {
+      if (function == Node.SIN) {
         double theta = parameter;
         result = java.lang.Math.sin(theta);
 
-      } else if (function.equals("cos")) {
+      } else if (function == Node.COS) {
         double theta = parameter;
         result = java.lang.Math.cos(theta);
 
-      } else if (function.equals("tan")) {
+      } else if (function == Node.TAN) {
         result = Math.tan(parameter);
 
-      } else if (function.equals("log")) {
+      } else if (function == Node.LOG) {
         if (parameter <= 0) {
           setErrorCode(UNDEFINED_VALUE);
           return 0;
@@ -421,7 +570,7 @@ public class Parser {
           result = Math.log10(parameter);
         }
 
-      } else if (function.equals("ln")) {
+      } else if (function == Node.LN) {
         if (parameter <= 0) {
           setErrorCode(UNDEFINED_VALUE);
           result = 0;
@@ -429,13 +578,16 @@ public class Parser {
           result = Math.log(parameter);
         }
 
-      } else if (function.equals("abs")) {
+      } else if (function == Node.ABS) {
         result = Math.abs(parameter);
 
-      } else if (function.equals("exp")) {
+      } else if (function == Node.SIGN) {
+        result = java.lang.Math.signum(parameter);
+
+      } else if (function == Node.EXP) {
         result = Math.exp(parameter);
 
-      } else if (function.equals("sqrt")) {
+      } else if (function == Node.SQRT) {
         if (parameter < 0) {
           setErrorCode(UNDEFINED_VALUE);
         } else {
@@ -462,13 +614,52 @@ public class Parser {
    */
   public double evaluate()
   {
-    String temp = expression.toString();
-    double result = evaluate(temp);
-    expression = new StringBuffer(temp);
+    double result = 0;
+    index = 0;
+
+    setErrorCode(SUCCESS);
+    nextToken();
+    if (atEnd()) {
+      setErrorCode(NO_EXPRESSION);
+      return result;
+    }
+
+    result = sumAndSubtraction();
+
+    if (!atEnd()) {
+      setErrorCode(LAST_TOKEN_NOT_NULL);
+      return 0;
+    }
 
     return result;
   }
 
+  /**
+   * Returns the slot of a variable of the expression being compiled.
+   * @return int, the position of name in compiledVariables or -1
+   */
+  private int slotOf(String name)
+  {
+    for (int i = 0; i < compiledVariables.length; i++)
+      if (compiledVariables[i].equals(name))
+        return i;
+
+    return -1;
+  }
+
+  /**
+   * Returns the index of the variable named by the current token.
+   * @return int, the index in variableNames or -1 if it is not defined
+   */
+  private int findVariable()
+  {
+    for (int i = 0; i < variableCount; i++)
+      if (tokenEquals(variableNames[i]))
+        return i;
+
+    return -1;
+  }
+
 
   /**
    * Returns the value of evaluating the expression passed as parameter.
@@ -479,41 +670,210 @@ public class Parser {
    */
   public double evaluate(String expression)
   {
-    double result = 0;
-    this.expression = new StringBuffer(expression);
-    index = 0;
+    setExpression(expression);
+    return evaluate();
+  }
+
+  /**
+   * Tests if expression is valid, e.g. balanced parentheses, valid operations,
+   * valid functions, valid constants, etc. The expression is compiled through
+   * the shared {@link ExpressionCache}, so a later Function with the same
+   * definition doesn't parse it again.
+   * @param expression the expression to examine
+   * @return boolean, true if the expression is valid, false otherwise
+   */
+  public boolean validate(String expression)
+  {
+    setErrorCode(ExpressionCache.getShared().validate(expression));
+    return getErrorCode() == SUCCESS;
+  }
+
+  /**
+   * Compiles expression into an immutable tree that can be evaluated many
+   * times without parsing it again. The grammar is the same used by
+   * evaluate(), the tree is simplified with {@link Simplifier}.
+   * @param expression the expression to compile
+   * @param variable name of the independent variable, e.g. "x"
+   * @return Expression, the compiled expression or null if it is not valid,
+   *         in that case getErrorCode() tells the reason
+   */
+  public Expression compile(String expression, String variable)
+  {
+    return compile(expression, new String[] {variable});
+  }
+
+  /**
+   * Compiles an expression of several variables. Each name is bound to the
+   * slot given by its position in variables, so the expression can later be
+   * evaluated from a double[] environment without looking names up; any
+   * other name compiles to an unbound variable, which evaluates to NaN.
+   * @param expression the expression to compile, e.g. "a*x^2 + k"
+   * @param variables names of the variables, e.g. {"x", "a", "k"}; the
+   *                  first one is the independent variable
+   * @return Expression, the compiled expression or null if it is not valid
+   */
+  public Expression compile(String expression, String[] variables)
+  {
+    setExpression(expression);
+    compiledVariables = variables;
 
     setErrorCode(SUCCESS);
     nextToken();
-    if (token.equals("")) {
+    if (atEnd()) {
       setErrorCode(NO_EXPRESSION);
-      return result;
+      return null;
     }
 
-    result = sumAndSubtraction();
+    Node root = compileSumAndSubtraction();
 
-    if (!token.equals("")) {
+    if (getErrorCode() == SUCCESS && !atEnd())
       setErrorCode(LAST_TOKEN_NOT_NULL);
-      return 0;
-    }
+    if (getErrorCode() != SUCCESS)
+      return null;
 
-    return result;
+    return new Expression(Simplifier.simplify(root), variables);
   }
 
   /**
-   * Tests if expression is valid, e.g. balanced parentheses, valid operations,
-   * valid functions, valid constants, etc.
-   * @param expression the expression to examine
-   * @return boolean, true if the expression is valid, false otherwise
+   * Compiles expression using "x" as the independent variable.
+   * @param expression the expression to compile
+   * @return Expression, the compiled expression or null if it is not valid
    */
-  public boolean validate(String expression)
+  public Expression compile(String expression)
   {
-    setValidationMode(true);
-    evaluate(expression);
-    setValidationMode(false);
-    return getErrorCode() == SUCCESS;
+    return compile(expression, "x");
   }
 
+  /**
+   * Same as sumAndSubtraction() but builds a tree instead of computing the
+   * value, the remaining compile* methods mirror their evaluating
+   * counterparts too.
+   * @return Node, the tree for the sum of all terms
+   */
+  private Node compileSumAndSubtraction()
+  {
+    if (getErrorCode() != SUCCESS) return null;
 
-}
+    char operator;
+    Node result = compileProductAndDivision();
+
+    while (isToken('+') || isToken('-')) {
+      operator = delimiter;
+      nextToken();
+      Node temp = compileProductAndDivision();
+
+      if (operator == '+')
+        result = Node.binary(Node.ADD, result, temp);
+      else
+        result = Node.binary(Node.SUBTRACT, result, temp);
+    }
+
+    return result;
+  }
+
+  private Node compileProductAndDivision()
+  {
+    if (getErrorCode() != SUCCESS) return null;
+
+    char operator;
+    Node result = compileExponentAndFactorial();
+
+    while (isToken('*') || isToken('/')) {
+      operator = delimiter;
+      nextToken();
+      Node temp = compileExponentAndFactorial();
+
+      if (operator == '*')
+        result = Node.binary(Node.MULTIPLY, result, temp);
+      else
+        result = Node.binary(Node.DIVIDE, result, temp);
+    }
 
+    return result;
+  }
+
+  private Node compileExponentAndFactorial()
+  {
+    if (getErrorCode() != SUCCESS) return null;
+
+    Node result = compileSign();
+    if (isToken('^')) {
+      nextToken();
+      Node p = compileExponentAndFactorial();
+      result = Node.binary(Node.POWER, result, p);
+    } else if (isToken('!')) {
+      result = Node.unary(Node.FACTORIAL, result);
+      nextToken();
+    }
+
+    return result;
+  }
+
+  private Node compileSign()
+  {
+    if (getErrorCode() != SUCCESS) return null;
+
+    char operator = 0;
+
+    if (isToken('+') || isToken('-')) {
+      operator = delimiter;
+      nextToken();
+    }
+
+    Node result = compileSubExpression();
+    if (operator == '-')
+      result = Node.unary(Node.NEGATE, result);
+
+    return result;
+  }
+
+  private Node compileSubExpression()
+  {
+    if (getErrorCode() != SUCCESS) return null;
+
+    Node result;
+    if (isToken('(')) {
+      nextToken();
+      result = compileSumAndSubtraction();
+      if (!isToken(')')) {
+        setErrorCode(INVALID_EXPRESSION);
+        return null;
+      }
+
+      nextToken();
+    } else {
+      result = compileAtom();
+    }
+    return result;
+  }
+
+  private Node compileAtom()
+  {
+    if (getErrorCode() != SUCCESS) return null;
+
+    Node result = null;
+    if (tokenType == NUMBER || tokenType == CONSTANT) {
+      result = Node.constant(tokenValue);
+      nextToken();
+    } else if (tokenType == VARIABLE) {
+      String name = new String(expression, tokenStart, tokenEnd - tokenStart);
+      result = Node.variable(name, slotOf(name));
+      nextToken();
+    } else if (tokenType == FUNCTION) {
+      int function = this.function;
+      nextToken();
+      if (!isToken('(')) {
+        setErrorCode(INVALID_FUNCTION);
+        return null;
+      }
+
+      Node parameter = compileSubExpression();
+      result = Node.unary(function, parameter);
+    } else {
+      setErrorCode(INVALID_NUMBER);
+      return null;
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,299 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A polynomial in the independent variable, c[0] + c[1] x + ... + c[n] x^n,
+ * recognized from a compiled expression. It is evaluated with Horner's
+ * scheme and its coefficients feed the all-roots solver.
+ */
+public final class Polynomial implements DoubleUnaryOperator {
+  /** Expressions of higher degree are not treated as polynomials. */
+  public static final int MAX_DEGREE = 64;
+
+  private final double[] coefficients;
+  private final boolean expanded;
+
+  /**
+   * Creates a polynomial.
+   * @param coefficients coefficients[k] multiplies x^k
+   * @param expanded true if the expression was written as a sum of
+   *                 monomials, see isExpanded()
+   */
+  public Polynomial(double[] coefficients, boolean expanded)
+  {
+    int n = coefficients.length;
+    while (n > 1 && coefficients[n - 1] == 0)
+      n--;
+
+    this.coefficients = Arrays.copyOf(coefficients, n);
+    this.expanded = expanded;
+  }
+
+  /**
+   * Tests if an expression is a polynomial in the variable of slot 0, that
+   * is, it is built only from constants, that variable, +, -, *, division
+   * by constants and powers with constant natural exponents.
+   * @param expression the expression to examine
+   * @return Polynomial, its coefficients or null if it is not a polynomial
+   */
+  public static Polynomial recognize(Expression expression)
+  {
+    Recognizer recognizer = new Recognizer();
+    double[] c = recognizer.expand(expression.getRoot());
+    if (c == null)
+      return null;
+
+    return new Polynomial(c, recognizer.expanded);
+  }
+
+  public int getDegree()
+  {
+    return coefficients.length - 1;
+  }
+
+  /**
+   * Returns the coefficient of x^k.
+   * @param k power of x
+   * @return double, the coefficient, zero if k is above the degree
+   */
+  public double getCoefficient(int k)
+  {
+    return k < coefficients.length ? coefficients[k] : 0;
+  }
+
+  public double[] getCoefficients()
+  {
+    return coefficients.clone();
+  }
+
+  /**
+   * Tells if the polynomial was written as a sum of monomials. Then Horner's
+   * scheme is as accurate as the expression itself; expanding products like
+   * (x - 1)^8 instead loses the accuracy near clustered roots, so those are
+   * better evaluated in their original form.
+   * @return boolean, true if no product of sums was expanded
+   */
+  public boolean isExpanded()
+  {
+    return expanded;
+  }
+
+  /**
+   * Evaluates the polynomial with Horner's scheme.
+   * @param x value of the variable
+   * @return double, p(x)
+   */
+  public double evaluate(double x)
+  {
+    int n = coefficients.length - 1;
+    double result = coefficients[n];
+    for (int k = n - 1; k >= 0; k--)
+      result = result * x + coefficients[k];
+
+    return result;
+  }
+
+  @Override
+  public double applyAsDouble(double x)
+  {
+    return evaluate(x);
+  }
+
+  /**
+   * Evaluates the polynomial at every point of xs. The loops are
+   * interchanged, every Horner step is applied to all points at once, so
+   * the inner loop is a plain multiply-add over arrays.
+   * @param xs values of the variable
+   * @param out receives p(xs[i]) in out[i]
+   * @param count number of points
+   */
+  public void evaluate(double[] xs, double[] out, int count)
+  {
+    int n = coefficients.length - 1;
+    Arrays.fill(out, 0, count, coefficients[n]);
+
+    for (int k = n - 1; k >= 0; k--) {
+      double c = coefficients[k];
+      for (int i = 0; i < count; i++)
+        out[i] = out[i] * xs[i] + c;
+    }
+  }
+
+  /**
+   * Evaluates the polynomial at count evenly spaced points, start + i*step.
+   * @param start first point
+   * @param step distance between consecutive points
+   * @param count number of points
+   * @param out receives p(start + i*step) in out[i]
+   */
+  public void evaluate(double start, double step, int count, double[] out)
+  {
+    double[] xs = new double[Math.min(count, Expression.BLOCK_SIZE)];
+    double[] block = new double[xs.length];
+
+    for (int offset = 0; offset < count; offset += xs.length) {
+      int length = Math.min(xs.length, count - offset);
+      for (int i = 0; i < length; i++)
+        xs[i] = start + (offset + i) * step;
+
+      evaluate(xs, block, length);
+      System.arraycopy(block, 0, out, offset, length);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder result = new StringBuilder();
+
+    for (int k = coefficients.length - 1; k >= 0; k--) {
+      double c = coefficients[k];
+      if (c == 0 && coefficients.length > 1)
+        continue;
+
+      if (result.length() > 0)
+        result.append(c < 0 ? " - " : " + ");
+      else if (c < 0)
+        result.append("-");
+
+      result.append(Math.abs(c));
+      if (k > 0)
+        result.append("*x");
+      if (k > 1)
+        result.append("^").append(k);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Expands a tree into coefficients, remembering whether products of sums
+   * had to be multiplied out.
+   */
+  private static final class Recognizer {
+    boolean expanded = true;
+
+    /**
+     * @return double[], the coefficients of node or null if it is not a
+     *         polynomial of degree MAX_DEGREE or less
+     */
+    double[] expand(Node node)
+    {
+      switch (node.getType()) {
+        case Node.CONSTANT:
+          if (Double.isNaN(node.getValue()) || Double.isInfinite(node.getValue()))
+            return null;
+          return new double[] {node.getValue()};
+
+        case Node.VARIABLE:
+          return node.getSlot() == 0 ? new double[] {0, 1} : null;
+
+        case Node.NEGATE: {
+          double[] a = expand(node.getLeft());
+          if (a == null)
+            return null;
+          for (int k = 0; k < a.length; k++)
+            a[k] = -a[k];
+          return a;
+        }
+
+        case Node.ADD:
+        case Node.SUBTRACT: {
+          double[] a = expand(node.getLeft());
+          double[] b = a == null ? null : expand(node.getRight());
+          if (b == null)
+            return null;
+
+          double sign = node.getType() == Node.ADD ? 1 : -1;
+          double[] c = Arrays.copyOf(a, Math.max(a.length, b.length));
+          for (int k = 0; k < b.length; k++)
+            c[k] += sign * b[k];
+          return c;
+        }
+
+        case Node.MULTIPLY: {
+          double[] a = expand(node.getLeft());
+          double[] b = a == null ? null : expand(node.getRight());
+          if (b == null)
+            return null;
+          return multiply(a, b);
+        }
+
+        case Node.DIVIDE: {
+          double[] a = expand(node.getLeft());
+          double[] b = a == null ? null : expand(node.getRight());
+          if (b == null || b.length > 1 || b[0] == 0)
+            return null;
+
+          for (int k = 0; k < a.length; k++)
+            a[k] /= b[0];
+          return a;
+        }
+
+        case Node.POWER: {
+          Node exponent = node.getRight();
+          if (exponent.getType() != Node.CONSTANT)
+            return null;
+
+          double p = exponent.getValue();
+          if (p < 0 || p > MAX_DEGREE || p != Math.floor(p))
+            return null;
+
+          double[] base = expand(node.getLeft());
+          if (base == null || (base.length - 1) * p > MAX_DEGREE)
+            return null;
+
+          double[] result = {1};
+          for (int i = 0; i < (int)p; i++)
+            result = multiply(result, base);
+          return result;
+        }
+      }
+
+      return null;
+    }
+
+    private double[] multiply(double[] a, double[] b)
+    {
+      if (a.length + b.length - 2 > MAX_DEGREE)
+        return null;
+      if (terms(a) > 1 && terms(b) > 1)
+        expanded = false;
+
+      double[] c = new double[a.length + b.length - 1];
+      for (int i = 0; i < a.length; i++)
+        for (int j = 0; j < b.length; j++)
+          c[i + j] += a[i] * b[j];
+      return c;
+    }
+
+    private static int terms(double[] a)
+    {
+      int count = 0;
+      for (double c : a)
+        if (c != 0)
+          count++;
+      return count;
+    }
+  }
+}
@@ -0,0 +1,561 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Linear form of an expression tree. Every distinct subtree becomes one
+ * instruction whose result is kept in a register, structurally identical
+ * subtrees, e.g. both exp(-x^2) in exp(-x^2)*sin(x) + exp(-x^2)*cos(x), are
+ * computed only once per evaluation.
+ *
+ * Instructions are in evaluation order, instruction i writes register i and
+ * reads registers with smaller indices. The last instruction is the result.
+ */
+public final class Program {
+
+  private static final double LN10 = Math.log(10);
+
+  private final int size;
+  private final int[] types;
+  private final int[] left;
+  private final int[] right;
+  private final int[] slots;
+  private final double[] values;
+  private final int[] uses;
+
+  // Register allocation for batch evaluation: instruction i writes column
+  // columns[i], a column is reused once the registers it held are dead.
+  private final int[] columns;
+  private final int columnCount;
+
+  // Registers of scalar evaluation, one array per thread since programs are
+  // shared and evaluated millions of times by the solvers
+  private final ThreadLocal<double[]> registers;
+
+  private Program(int size, int[] types, int[] left, int[] right,
+                  int[] slots, double[] values)
+  {
+    this.size = size;
+    this.types = types;
+    this.left = left;
+    this.right = right;
+    this.slots = slots;
+    this.values = values;
+
+    uses = new int[size];
+    for (int i = 0; i < size; i++) {
+      if (left[i] >= 0) uses[left[i]]++;
+      if (right[i] >= 0) uses[right[i]]++;
+    }
+
+    columns = new int[size];
+    columnCount = allocateColumns();
+
+    registers = new ThreadLocal<double[]>() {
+      @Override
+      protected double[] initialValue()
+      {
+        return new double[Program.this.size];
+      }
+    };
+  }
+
+  /**
+   * Translates a tree into a program, sharing common subexpressions.
+   * @param root root of the tree
+   * @return Program, the linear form of the tree
+   */
+  public static Program compile(Node root)
+  {
+    Builder builder = new Builder();
+    builder.add(root);
+    return builder.build();
+  }
+
+  /**
+   * Creates a program from its instructions, which must be in evaluation
+   * order like the ones built by compile(). The arrays are not copied.
+   */
+  static Program create(int[] types, int[] left, int[] right, int[] slots,
+                        double[] values)
+  {
+    return new Program(types.length, types, left, right, slots, values);
+  }
+
+  /**
+   * Rebuilds the expression tree, a register read by several instructions
+   * becomes a node shared by several parents.
+   * @param names names[i] is the name of register i if it is a variable
+   * @return Node, the root of the tree
+   */
+  Node toTree(String[] names)
+  {
+    Node[] nodes = new Node[size];
+
+    for (int i = 0; i < size; i++) {
+      switch (types[i]) {
+        case Node.CONSTANT:
+          nodes[i] = Node.constant(values[i]);
+          break;
+        case Node.VARIABLE:
+          nodes[i] = Node.variable(names[i], slots[i]);
+          break;
+        default:
+          if (right[i] < 0)
+            nodes[i] = Node.unary(types[i], nodes[left[i]]);
+          else
+            nodes[i] = Node.binary(types[i], nodes[left[i]], nodes[right[i]]);
+      }
+    }
+
+    return nodes[size - 1];
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public int getType(int i)
+  {
+    return types[i];
+  }
+
+  public int getLeft(int i)
+  {
+    return left[i];
+  }
+
+  public int getRight(int i)
+  {
+    return right[i];
+  }
+
+  public int getSlot(int i)
+  {
+    return slots[i];
+  }
+
+  public double getValue(int i)
+  {
+    return values[i];
+  }
+
+  /**
+   * Returns how many instructions read register i.
+   * @param i register index
+   * @return int, number of uses of register i
+   */
+  public int getUses(int i)
+  {
+    return uses[i];
+  }
+
+  /**
+   * Evaluates the program for the given value of slot 0.
+   * @param x value of the variable
+   * @return double, the result or NaN if it is undefined at x
+   */
+  public double evaluate(double x)
+  {
+    return run(x, null, registers.get());
+  }
+
+  /**
+   * Evaluates the program taking the value of the variable in slot i from
+   * env[i].
+   * @param env values of the variables
+   * @return double, the result or NaN if it is undefined there
+   */
+  public double evaluate(double[] env)
+  {
+    return run(Double.NaN, env, registers.get());
+  }
+
+  /**
+   * Runs the instructions in registers r. Variables are read from env, or
+   * when it is null slot 0 is x and the others are undefined.
+   */
+  private double run(double x, double[] env, double[] r)
+  {
+    for (int i = 0; i < size; i++) {
+      switch (types[i]) {
+        case Node.CONSTANT: r[i] = values[i];                   break;
+        case Node.VARIABLE: r[i] = variable(slots[i], x, env);  break;
+        case Node.NEGATE:   r[i] = -r[left[i]];                 break;
+        case Node.ADD:      r[i] = r[left[i]] + r[right[i]];    break;
+        case Node.SUBTRACT: r[i] = r[left[i]] - r[right[i]];    break;
+        case Node.MULTIPLY: r[i] = r[left[i]] * r[right[i]];    break;
+        case Node.DIVIDE:   r[i] = r[left[i]] / r[right[i]];    break;
+        default:
+          if (right[i] < 0)
+            r[i] = Node.apply(types[i], r[left[i]]);
+          else
+            r[i] = Node.apply(types[i], r[left[i]], r[right[i]]);
+      }
+    }
+
+    return r[size - 1];
+  }
+
+  private static double variable(int slot, double x, double[] env)
+  {
+    if (env == null)
+      return slot == 0 ? x : Double.NaN;
+    return slot >= 0 && slot < env.length ? env[slot] : Double.NaN;
+  }
+
+  /**
+   * Evaluates the program and its derivatives with respect to slot 0 in a
+   * single pass, using truncated Taylor series (jets) instead of plain
+   * values: every register carries u, u' and, if asked for, u''.
+   * @param x value of the variable
+   * @param jet receives f(x) in jet[0], f'(x) in jet[1] and, when jet has
+   *            three or more elements, f''(x) in jet[2]
+   */
+  public void evaluate(double x, double[] jet)
+  {
+    boolean second = jet.length > 2;
+    double[] v = new double[size];
+    double[] d = new double[size];
+    double[] dd = new double[size];
+
+    for (int i = 0; i < size; i++) {
+      int type = types[i];
+      int a = left[i];
+      int b = right[i];
+
+      switch (type) {
+        case Node.CONSTANT:
+          v[i] = values[i];
+          continue;
+
+        case Node.VARIABLE:
+          v[i] = slots[i] == 0 ? x : Double.NaN;
+          d[i] = slots[i] == 0 ? 1 : 0;
+          continue;
+
+        case Node.NEGATE:
+          v[i] = -v[a];
+          d[i] = -d[a];
+          dd[i] = -dd[a];
+          continue;
+
+        case Node.ADD:
+          v[i] = v[a] + v[b];
+          d[i] = d[a] + d[b];
+          dd[i] = dd[a] + dd[b];
+          continue;
+
+        case Node.SUBTRACT:
+          v[i] = v[a] - v[b];
+          d[i] = d[a] - d[b];
+          dd[i] = dd[a] - dd[b];
+          continue;
+
+        case Node.MULTIPLY:
+          v[i] = v[a] * v[b];
+          d[i] = d[a] * v[b] + v[a] * d[b];
+          if (second)
+            dd[i] = dd[a] * v[b] + 2 * d[a] * d[b] + v[a] * dd[b];
+          continue;
+
+        case Node.DIVIDE: {
+          double q = v[a] / v[b];
+          double dq = (d[a] - q * d[b]) / v[b];
+          v[i] = q;
+          d[i] = dq;
+          if (second)
+            dd[i] = (dd[a] - 2 * dq * d[b] - q * dd[b]) / v[b];
+          continue;
+        }
+
+        case Node.POWER:
+          power(v, d, dd, i, a, b, second);
+          continue;
+      }
+
+      // Unary functions: (g o u)' = g'(u) u', (g o u)'' = g''(u) u'^2 + g'(u) u''
+      double u = v[a];
+      double value = Node.apply(type, u);
+      double g1, g2;
+
+      switch (type) {
+        case Node.SIN:  g1 = Math.cos(u);  g2 = -value;        break;
+        case Node.COS:  g1 = -Math.sin(u); g2 = -value;        break;
+        case Node.TAN:  g1 = 1 + value * value;
+                        g2 = 2 * value * g1;                   break;
+        case Node.EXP:  g1 = value;        g2 = value;         break;
+        case Node.LN:   g1 = 1 / u;        g2 = -g1 * g1;      break;
+        case Node.LOG:  g1 = 1 / (u * LN10);
+                        g2 = -g1 / u;                          break;
+        case Node.SQRT: g1 = 0.5 / value;  g2 = -0.5 * g1 / u; break;
+        case Node.ABS:  g1 = Math.signum(u); g2 = 0;           break;
+        default:        g1 = 0;            g2 = 0; // factorial, sign
+      }
+
+      v[i] = value;
+      if (Double.isNaN(value)) {
+        d[i] = Double.NaN;
+        dd[i] = Double.NaN;
+      } else {
+        d[i] = g1 * d[a];
+        if (second)
+          dd[i] = g2 * d[a] * d[a] + g1 * dd[a];
+      }
+    }
+
+    jet[0] = v[size - 1];
+    jet[1] = d[size - 1];
+    if (second)
+      jet[2] = dd[size - 1];
+  }
+
+  /**
+   * Jet of a^b. Constant exponents use the power rule, which is defined for
+   * negative bases, the general case goes through exp(b ln a).
+   */
+  private static void power(double[] v, double[] d, double[] dd, int i,
+                            int a, int b, boolean second)
+  {
+    double base = v[a];
+    double exponent = v[b];
+    double value = Node.apply(Node.POWER, base, exponent);
+    v[i] = value;
+
+    if (d[b] == 0 && dd[b] == 0) {
+      double g1 = exponent * Math.pow(base, exponent - 1);
+      d[i] = g1 * d[a];
+      if (second) {
+        double g2 = exponent * (exponent - 1) * Math.pow(base, exponent - 2);
+        dd[i] = g2 * d[a] * d[a] + g1 * dd[a];
+      }
+      return;
+    }
+
+    // h = b ln(a), (a^b)' = a^b h', (a^b)'' = a^b (h'' + h'^2)
+    double log = Math.log(base);
+    double ratio = d[a] / base;
+    double h1 = d[b] * log + exponent * ratio;
+    d[i] = value * h1;
+    if (second) {
+      double h2 = dd[b] * log + 2 * d[b] * ratio +
+                  exponent * (dd[a] / base - ratio * ratio);
+      dd[i] = value * (h2 + h1 * h1);
+    }
+  }
+
+  /**
+   * Evaluates the program for length points of xs, starting at xOffset, and
+   * stores the results in out starting at offset. Each instruction is
+   * applied to the whole block by kernel before moving to the next one.
+   * @param columns scratch space, at least getColumnCount() arrays of
+   *                length or more elements
+   */
+  void evaluate(double[] xs, int xOffset, double[] out, int offset,
+                int length, double[][] columns, ColumnKernel kernel)
+  {
+    for (int i = 0; i < size; i++) {
+      double[] target = columns[this.columns[i]];
+
+      switch (types[i]) {
+        case Node.CONSTANT:
+          Arrays.fill(target, 0, length, values[i]);
+          continue;
+
+        case Node.VARIABLE:
+          if (slots[i] == 0)
+            System.arraycopy(xs, xOffset, target, 0, length);
+          else
+            Arrays.fill(target, 0, length, Double.NaN);
+          continue;
+      }
+
+      double[] a = columns[this.columns[left[i]]];
+      if (a != target)
+        System.arraycopy(a, 0, target, 0, length);
+
+      if (right[i] < 0)
+        kernel.apply(types[i], target, 0, length);
+      else
+        kernel.apply(types[i], target, 0, columns[this.columns[right[i]]],
+                     length);
+    }
+
+    System.arraycopy(columns[this.columns[size - 1]], 0, out, offset, length);
+  }
+
+  /**
+   * Returns the number of scratch columns batch evaluation needs.
+   * @return int, number of columns
+   */
+  public int getColumnCount()
+  {
+    return columnCount;
+  }
+
+  /**
+   * Assigns a column to every register. An instruction overwrites the column
+   * of its left operand when this is its last use, so most operations are
+   * done in place, otherwise it takes a free column different from the one
+   * of its right operand.
+   * @return int, number of columns used
+   */
+  private int allocateColumns()
+  {
+    int[] remaining = uses.clone();
+    int[] free = new int[size];
+    int freeCount = 0;
+    int count = 0;
+
+    for (int i = 0; i < size; i++) {
+      int a = left[i];
+      int b = right[i];
+
+      if (a >= 0) remaining[a]--;
+      if (b >= 0) remaining[b]--;
+
+      if (a >= 0 && remaining[a] == 0)
+        columns[i] = columns[a];
+      else
+        columns[i] = freeCount > 0 ? free[--freeCount] : count++;
+
+      if (b >= 0 && b != a && remaining[b] == 0)
+        free[freeCount++] = columns[b];
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns a listing of the program, one instruction per line, e.g.
+   * "r3 = sin r1", shared registers are marked with the number of uses.
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder listing = new StringBuilder();
+
+    for (int i = 0; i < size; i++) {
+      listing.append('r').append(i).append(" = ");
+
+      switch (types[i]) {
+        case Node.CONSTANT: listing.append(values[i]);                break;
+        case Node.VARIABLE: listing.append("var ").append(slots[i]); break;
+        case Node.NEGATE:   listing.append("neg r").append(left[i]); break;
+        case Node.FACTORIAL: listing.append("fact r").append(left[i]); break;
+        case Node.ADD:      binary(listing, "add", i);                break;
+        case Node.SUBTRACT: binary(listing, "sub", i);                break;
+        case Node.MULTIPLY: binary(listing, "mul", i);                break;
+        case Node.DIVIDE:   binary(listing, "div", i);                break;
+        case Node.POWER:    binary(listing, "pow", i);                break;
+        default:
+          listing.append(Node.functionName(types[i]))
+                 .append(" r").append(left[i]);
+      }
+
+      if (uses[i] > 1)
+        listing.append("    ; shared, ").append(uses[i]).append(" uses");
+      listing.append('\n');
+    }
+
+    return listing.toString();
+  }
+
+  private void binary(StringBuilder listing, String name, int i)
+  {
+    listing.append(name).append(" r").append(left[i])
+           .append(", r").append(right[i]);
+  }
+
+  /**
+   * Collects instructions in post order. Nodes already seen, either the same
+   * object or an equal subtree, map to the register computed the first time.
+   */
+  private static class Builder {
+    private int size;
+    private int[] types = new int[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] slots = new int[16];
+    private double[] values = new double[16];
+
+    private IdentityHashMap<Node, Integer> visited =
+        new IdentityHashMap<Node, Integer>();
+    private HashMap<String, Integer> registers = new HashMap<String, Integer>();
+
+    int add(Node node)
+    {
+      Integer known = visited.get(node);
+      if (known != null)
+        return known;
+
+      int a = node.isLeaf() ? -1 : add(node.getLeft());
+      int b = node.isBinary() ? add(node.getRight()) : -1;
+      int slot = node.getType() == Node.VARIABLE ? node.getSlot() : -1;
+      double value = node.getValue();
+
+      // Children are already unique, so a subtree is identified by its
+      // operator and the registers of its children.
+      String key = node.getType() + ":" + a + ":" + b + ":" + slot + ":" +
+                   Double.doubleToRawLongBits(value);
+      Integer register = registers.get(key);
+
+      if (register == null) {
+        register = size;
+        registers.put(key, register);
+        append(node.getType(), a, b, slot, value);
+      }
+
+      visited.put(node, register);
+      return register;
+    }
+
+    private void append(int type, int a, int b, int slot, double value)
+    {
+      if (size == types.length) {
+        int capacity = 2 * size;
+        types = Arrays.copyOf(types, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+
+      types[size] = type;
+      left[size] = a;
+      right[size] = b;
+      slots[size] = slot;
+      values[size] = value;
+      size++;
+    }
+
+    Program build()
+    {
+      return new Program(size, Arrays.copyOf(types, size),
+                         Arrays.copyOf(left, size), Arrays.copyOf(right, size),
+                         Arrays.copyOf(slots, size),
+                         Arrays.copyOf(values, size));
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+/**
+ * Optimization pass over expression trees. Subtrees that don't depend on any
+ * variable are folded into constants and a few identities that hold exactly
+ * in floating point are applied:
+ *
+ *   x*1 = 1*x = x/1 = x,  x*(-1) = -1*x = -x,  x+0 = 0+x = x-0 = x,
+ *   x^1 = x,  -(-x) = x,
+ *   a+(-b) = a-b,  a-(-b) = a+b,  x^2 = x*x,  x/c = x*(1/c) when c is a
+ *   power of two.
+ *
+ * Rewrites that change results for infinite or NaN operands, like 0*x = 0,
+ * are not applied.
+ */
+public class Simplifier {
+
+  /**
+   * Returns a simplified tree equivalent to node.
+   * @param node root of the tree
+   * @return Node, the simplified tree, node itself if nothing changed
+   */
+  public static Node simplify(Node node)
+  {
+    if (node.isLeaf())
+      return node;
+
+    int type = node.getType();
+    Node left = simplify(node.getLeft());
+
+    if (node.isUnary()) {
+      if (isConstant(left) && isDefined(Node.apply(type, left.getValue())))
+        return Node.constant(Node.apply(type, left.getValue()));
+
+      if (type == Node.NEGATE && left.getType() == Node.NEGATE)
+        return left.getLeft();
+
+      if (left == node.getLeft())
+        return node;
+      return Node.unary(type, left);
+    }
+
+    Node right = simplify(node.getRight());
+
+    if (isConstant(left) && isConstant(right)) {
+      double value = Node.apply(type, left.getValue(), right.getValue());
+      if (isDefined(value))
+        return Node.constant(value);
+    }
+
+    switch (type) {
+      case Node.ADD:
+        if (isConstant(right, 0)) return left;
+        if (isConstant(left, 0)) return right;
+        if (right.getType() == Node.NEGATE)
+          return Node.binary(Node.SUBTRACT, left, right.getLeft());
+        break;
+
+      case Node.SUBTRACT:
+        if (isConstant(right, 0)) return left;
+        if (right.getType() == Node.NEGATE)
+          return Node.binary(Node.ADD, left, right.getLeft());
+        break;
+
+      case Node.MULTIPLY:
+        if (isConstant(right, 1)) return left;
+        if (isConstant(left, 1)) return right;
+        if (isConstant(right, -1)) return simplify(Node.unary(Node.NEGATE, left));
+        if (isConstant(left, -1)) return simplify(Node.unary(Node.NEGATE, right));
+        break;
+
+      case Node.DIVIDE:
+        if (isConstant(right, 1)) return left;
+        if (isConstant(right) && isPowerOfTwo(right.getValue()))
+          return Node.binary(Node.MULTIPLY, left,
+                             Node.constant(1 / right.getValue()));
+        break;
+
+      case Node.POWER:
+        if (isConstant(right, 1)) return left;
+        if (isConstant(right, 2))
+          return Node.binary(Node.MULTIPLY, left, left);
+        break;
+    }
+
+    if (left == node.getLeft() && right == node.getRight())
+      return node;
+    return Node.binary(type, left, right);
+  }
+
+  /**
+   * Constant subtrees are folded only when defined, undefined operations like
+   * log(-1) are kept so the evaluator can still report them.
+   */
+  private static boolean isDefined(double value)
+  {
+    return !Double.isNaN(value);
+  }
+
+  private static boolean isConstant(Node node)
+  {
+    return node.getType() == Node.CONSTANT;
+  }
+
+  private static boolean isConstant(Node node, double value)
+  {
+    return node.getType() == Node.CONSTANT && node.getValue() == value;
+  }
+
+  /**
+   * Tests if 1/c is exact, i.e. c is a normal power of two whose reciprocal
+   * is normal too.
+   */
+  private static boolean isPowerOfTwo(double c)
+  {
+    double m = Math.abs(c);
+    return m >= Double.MIN_NORMAL && m <= 0x1p1022 &&
+           (Double.doubleToRawLongBits(m) & 0x000fffffffffffffL) == 0;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.lang;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Column kernel built on the Vector API, every operator is applied to as many
+ * lanes as the preferred species holds. Elements that don't fill a whole
+ * vector at the end of a column go through the scalar kernel.
+ *
+ * Transcendental lane operations may differ from java.lang.Math by one ulp.
+ * Operators without a vector version, like factorial, use the scalar loops.
+ *
+ * Needs --add-modules jdk.incubator.vector both to compile and to run, when
+ * the module is missing ColumnKernel.load() falls back to the scalar kernel.
+ */
+class VectorKernel extends ColumnKernel {
+
+  private static final VectorSpecies<Double> SPECIES =
+      DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  public void apply(int type, double[] a, int offset, int length)
+  {
+    int step = SPECIES.length();
+    int bound = offset + SPECIES.loopBound(length);
+    int i = offset;
+
+    // Operators must be constants in each loop, otherwise the JIT can't
+    // turn the lane operations into vector instructions.
+    switch (type) {
+      case Node.NEGATE:
+        for (; i < bound; i += step)
+          load(a, i).neg().intoArray(a, i);
+        break;
+      case Node.ABS:
+        for (; i < bound; i += step)
+          load(a, i).abs().intoArray(a, i);
+        break;
+      case Node.SQRT:
+        for (; i < bound; i += step)
+          load(a, i).sqrt().intoArray(a, i);
+        break;
+      case Node.SIN:
+        for (; i < bound; i += step)
+          load(a, i).lanewise(VectorOperators.SIN).intoArray(a, i);
+        break;
+      case Node.COS:
+        for (; i < bound; i += step)
+          load(a, i).lanewise(VectorOperators.COS).intoArray(a, i);
+        break;
+      case Node.TAN:
+        for (; i < bound; i += step)
+          load(a, i).lanewise(VectorOperators.TAN).intoArray(a, i);
+        break;
+      case Node.EXP:
+        for (; i < bound; i += step)
+          load(a, i).lanewise(VectorOperators.EXP).intoArray(a, i);
+        break;
+      case Node.LOG:
+        for (; i < bound; i += step) {
+          // Parser reports log(t) as undefined for t <= 0
+          DoubleVector v = load(a, i);
+          v.lanewise(VectorOperators.LOG10)
+           .blend(Double.NaN, v.compare(VectorOperators.GT, 0).not())
+           .intoArray(a, i);
+        }
+        break;
+      case Node.LN:
+        for (; i < bound; i += step) {
+          DoubleVector v = load(a, i);
+          v.lanewise(VectorOperators.LOG)
+           .blend(Double.NaN, v.compare(VectorOperators.GT, 0).not())
+           .intoArray(a, i);
+        }
+        break;
+    }
+
+    super.apply(type, a, i, offset + length - i);
+  }
+
+  @Override
+  public void apply(int type, double[] a, int offset, double[] b, int length)
+  {
+    int step = SPECIES.length();
+    int bound = SPECIES.loopBound(length);
+    int i = 0;
+
+    switch (type) {
+      case Node.ADD:
+        for (; i < bound; i += step)
+          load(a, offset + i).add(load(b, i)).intoArray(a, offset + i);
+        break;
+      case Node.SUBTRACT:
+        for (; i < bound; i += step)
+          load(a, offset + i).sub(load(b, i)).intoArray(a, offset + i);
+        break;
+      case Node.MULTIPLY:
+        for (; i < bound; i += step)
+          load(a, offset + i).mul(load(b, i)).intoArray(a, offset + i);
+        break;
+      case Node.DIVIDE:
+        for (; i < bound; i += step)
+          load(a, offset + i).div(load(b, i)).intoArray(a, offset + i);
+        break;
+    }
+
+    // POWER stays scalar, the lane-wise pow has no vector intrinsic and is
+    // several times slower than Math.pow
+
+    for (; i < length; i++)
+      a[offset + i] = Node.apply(type, a[offset + i], b[i]);
+  }
+
+  private static DoubleVector load(double[] a, int offset)
+  {
+    return DoubleVector.fromArray(SPECIES, a, offset);
+  }
+}
@@ -0,0 +1,377 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+import edu.inforscience.lang.Polynomial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The Aberth-Ehrlich method, finds all the roots of a polynomial, real and
+ * complex, at once. Every approximation z[i] takes a Newton step corrected
+ * by the repulsion of the others,
+ *
+ *   w = (p/p') / (1 - (p/p') sum 1/(z[i] - z[j])),  z[i] = z[i] - w,
+ *
+ * which keeps them from converging to the same root, so multiple roots are
+ * found as many times as their multiplicity.
+ */
+public class Aberth implements RootFinder {
+
+  public static final int MAX_ITERATIONS = 500;
+
+  /** Unit roundoff of double arithmetic. */
+  private static final double ROUNDOFF = java.lang.Math.ulp(1.0) / 2;
+
+  private Function function;
+
+  public Aberth(Function f)
+  {
+    function = f;
+  }
+
+  public String getName()
+  {
+    return "Aberth";
+  }
+
+  /**
+   * @return long, always 0, the roots come from the coefficients and f
+   *         itself is never evaluated
+   */
+  public long getEvaluations()
+  {
+    return 0;
+  }
+
+  /**
+   * Returns the real roots of the function in [a, b].
+   * @param a start of the interval
+   * @param b end of the interval
+   * @param epsilon unused, the roots are found to the accuracy allowed by
+   *                rounding errors
+   * @return ArrayList&lt;Solution&gt;, the roots in ascending order, each
+   *         one as many times as its multiplicity
+   */
+  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  {
+    ArrayList<Solution> solutions = new ArrayList<Solution>();
+
+    for (Complex z : roots()) {
+      double x = z.getRe();
+      if (z.getIm() == 0 && x >= a && x <= b)
+        solutions.add(new Solution(x, x, x));
+    }
+
+    return solutions;
+  }
+
+  /**
+   * Returns all the roots of the function, which must be a polynomial.
+   * @return Complex[], the real roots in ascending order followed by the
+   *         complex ones, or an empty array if the function is not a
+   *         polynomial
+   */
+  public Complex[] roots()
+  {
+    Polynomial polynomial = function.getPolynomial();
+    if (polynomial == null)
+      return new Complex[0];
+
+    return roots(polynomial.getCoefficients());
+  }
+
+  /**
+   * Returns the roots of c[0] + c[1] x + ... + c[n] x^n.
+   * @param c the coefficients
+   * @return Complex[], the real roots in ascending order followed by the
+   *         complex ones, conjugate pairs together; roots whose imaginary part
+   *         is below the rounding error are returned as real
+   */
+  public static Complex[] roots(double[] c)
+  {
+    int n = c.length - 1;
+    while (n > 0 && c[n] == 0)
+      n--;
+
+    // Roots at zero are exact, remove them before iterating
+    int zeros = 0;
+    while (zeros < n && c[zeros] == 0)
+      zeros++;
+
+    double[] p = Arrays.copyOfRange(c, zeros, n + 1);
+    Complex[] z = approximate(p);
+
+    for (int i = 0; i < z.length; i++)
+      z[i] = realIfPossible(p, z[i]);
+    mergeClusters(p, z);
+
+    Complex[] result = new Complex[n];
+    for (int i = 0; i < zeros; i++)
+      result[i] = Complex.ZERO;
+    for (int i = 0; i < z.length; i++)
+      result[zeros + i] = z[i];
+
+    Arrays.sort(result, new Comparator<Complex>() {
+      @Override
+      public int compare(Complex u, Complex v)
+      {
+        boolean realU = u.getIm() == 0, realV = v.getIm() == 0;
+        if (realU != realV)
+          return realU ? -1 : 1;
+        if (u.getRe() != v.getRe())
+          return Double.compare(u.getRe(), v.getRe());
+        return Double.compare(v.getIm(), u.getIm());
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Runs the Aberth-Ehrlich iteration on a polynomial with p[0] != 0.
+   */
+  private static Complex[] approximate(double[] p)
+  {
+    int n = p.length - 1;
+    Complex[] z = new Complex[n];
+    boolean[] done = new boolean[n];
+    if (n == 0)
+      return z;
+
+    // Start on a circle whose radius is the geometric mean of the moduli of
+    // the roots, the offset avoids symmetric configurations
+    double radius = java.lang.Math.pow(java.lang.Math.abs(p[0] / p[n]),
+                                       1.0 / n);
+    for (int i = 0; i < n; i++)
+      z[i] = Complex.polar(radius, 2 * java.lang.Math.PI * i / n + 0.4);
+
+    Complex[] values = new Complex[2];
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      boolean converged = true;
+
+      for (int i = 0; i < n; i++) {
+        if (done[i])
+          continue;
+
+        double bound = horner(p, z[i], values);
+        if (values[0].abs() <= bound) {
+          done[i] = true;
+          continue;
+        }
+
+        Complex ratio = values[0].divide(values[1]);
+        Complex sum = Complex.ZERO;
+        for (int j = 0; j < n; j++)
+          if (j != i)
+            sum = sum.add(z[i].subtract(z[j]).reciprocal());
+
+        Complex w = ratio.divide(Complex.ONE.subtract(ratio.multiply(sum)));
+        z[i] = z[i].subtract(w);
+
+        if (w.abs() <= 4 * ROUNDOFF * z[i].abs())
+          done[i] = true;
+        else
+          converged = false;
+      }
+
+      if (converged)
+        break;
+    }
+
+    return z;
+  }
+
+  /**
+   * Evaluates p and p' at z with Horner's scheme.
+   * @param values receives p(z) and p'(z)
+   * @return double, a bound of the rounding error of p(z), when |p(z)| is
+   *         below it z is a root as far as double arithmetic can tell
+   */
+  private static double horner(double[] p, Complex z, Complex[] values)
+  {
+    int n = p.length - 1;
+    Complex value = new Complex(p[n], 0);
+    Complex derivative = Complex.ZERO;
+    double modulus = z.abs();
+    double bound = java.lang.Math.abs(p[n]);
+
+    for (int k = n - 1; k >= 0; k--) {
+      derivative = derivative.multiply(z).add(value);
+      value = value.multiply(z).add(new Complex(p[k], 0));
+      bound = bound * modulus + java.lang.Math.abs(p[k]);
+    }
+
+    values[0] = value;
+    values[1] = derivative;
+    return 4 * n * ROUNDOFF * bound;
+  }
+
+  /**
+   * Drops the imaginary part of z when the polynomial vanishes on its real
+   * part within rounding errors, the iteration leaves a tiny imaginary part
+   * on real roots, specially multiple ones.
+   */
+  private static Complex realIfPossible(double[] p, Complex z)
+  {
+    double x = z.getRe();
+    if (java.lang.Math.abs(z.getIm()) > 1e-6 * java.lang.Math.max(1, z.abs())) {
+      // Clean the rounding residue of roots on the imaginary axis
+      if (java.lang.Math.abs(x) <= 4 * ROUNDOFF * z.abs())
+        return new Complex(0, z.getIm());
+      return z;
+    }
+
+    Complex[] values = new Complex[2];
+    double bound = horner(p, new Complex(x, 0), values);
+    if (values[0].abs() <= bound)
+      return new Complex(x, 0);
+
+    // A simple real root with an imaginary residue, a sign change around x
+    // settles it
+    double h = java.lang.Math.abs(z.getIm()) + ROUNDOFF * java.lang.Math.abs(x);
+    double left = evaluate(p, x - 2 * h), right = evaluate(p, x + 2 * h);
+    if (java.lang.Math.signum(left) != java.lang.Math.signum(right))
+      return new Complex(x, 0);
+
+    return z;
+  }
+
+  /**
+   * Replaces clusters of approximations around a real multiple root by the
+   * root. A root of multiplicity m is only determined to about
+   * ROUNDOFF^(1/m), the approximations spread on a small circle around it.
+   * It is a simple root of the (m-1)-th derivative though, so Newton's
+   * method on that derivative, started at the mean of the cluster, finds it
+   * accurately. Clusters are grown with increasing radius, one is accepted
+   * when p vanishes at the refined root within rounding errors.
+   */
+  private static void mergeClusters(double[] p, Complex[] z)
+  {
+    int n = z.length;
+    boolean[] member = new boolean[n];
+    Complex[] values = new Complex[2];
+
+    for (int i = 0; i < n; i++) {
+      if (z[i].getIm() == 0)
+        continue;
+
+      double scale = java.lang.Math.max(1, z[i].abs());
+      for (double radius = 1e-6; radius <= 0.1; radius *= 10) {
+        int size = cluster(z, i, radius * scale, member);
+        if (size < 2)
+          continue;
+
+        double mean = 0;
+        for (int j = 0; j < n; j++)
+          if (member[j])
+            mean += z[j].getRe();
+        mean /= size;
+
+        double root = newton(derivative(p, size - 1), mean);
+        double bound = horner(p, new Complex(root, 0), values);
+        if (values[0].abs() <= bound) {
+          for (int j = 0; j < n; j++)
+            if (member[j])
+              z[j] = new Complex(root, 0);
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks in member the approximations reachable from z[i] through steps no
+   * longer than radius.
+   * @return int, the number of members
+   */
+  private static int cluster(Complex[] z, int i, double radius,
+                             boolean[] member)
+  {
+    Arrays.fill(member, false);
+    member[i] = true;
+    int size = 1;
+
+    for (boolean grown = true; grown; ) {
+      grown = false;
+      for (int j = 0; j < z.length; j++) {
+        if (member[j])
+          continue;
+        for (int k = 0; k < z.length; k++) {
+          if (member[k] && z[j].subtract(z[k]).abs() <= radius) {
+            member[j] = true;
+            size++;
+            grown = true;
+            break;
+          }
+        }
+      }
+    }
+
+    return size;
+  }
+
+  /**
+   * Returns the coefficients of the derivative of the given order.
+   */
+  private static double[] derivative(double[] p, int order)
+  {
+    double[] d = p.clone();
+    for (int k = 0; k < order && d.length > 1; k++) {
+      double[] next = new double[d.length - 1];
+      for (int i = 1; i < d.length; i++)
+        next[i - 1] = i * d[i];
+      d = next;
+    }
+
+    return d;
+  }
+
+  /**
+   * Refines a simple real root of q starting at x, gives up and returns x
+   * if Newton's method wanders off.
+   */
+  private static double newton(double[] q, double x)
+  {
+    double[] dq = derivative(q, 1);
+    double x0 = x;
+
+    for (int i = 0; i < 50; i++) {
+      double step = evaluate(q, x0) / evaluate(dq, x0);
+      if (Double.isNaN(step) || Double.isInfinite(step))
+        break;
+
+      x0 -= step;
+      if (java.lang.Math.abs(step) <= 4 * ROUNDOFF * java.lang.Math.abs(x0))
+        return x0;
+    }
+
+    return java.lang.Math.abs(x0 - x) <= 1 + java.lang.Math.abs(x) ? x0 : x;
+  }
+
+  private static double evaluate(double[] p, double x)
+  {
+    double result = p[p.length - 1];
+    for (int k = p.length - 2; k >= 0; k--)
+      result = result * x + p[k];
+    return result;
+  }
+}
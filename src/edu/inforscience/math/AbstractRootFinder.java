@@ -0,0 +1,139 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+import java.util.ArrayList;
+
+/**
+ * Base of the iterative methods. solve() brackets the roots with an
+ * {@link AdaptiveScanner} and then refines each bracket with the method,
+ * timing it and counting the evaluations of f made through f().
+ */
+public abstract class AbstractRootFinder implements RootFinder {
+
+  protected final Function function;
+  protected long evaluations;
+  private int scanBudget;
+
+  protected AbstractRootFinder(Function f)
+  {
+    function = f;
+    scanBudget = AdaptiveScanner.DEFAULT_BUDGET;
+  }
+
+  /**
+   * Returns the maximum number of evaluations spent looking for brackets.
+   * @return int, the budget of the AdaptiveScanner
+   */
+  public int getScanBudget()
+  {
+    return scanBudget;
+  }
+
+  public void setScanBudget(int scanBudget)
+  {
+    this.scanBudget = scanBudget;
+  }
+
+  /**
+   * Evaluates the function, counting the evaluation.
+   * @param x the point
+   * @return double, f(x)
+   */
+  public double f(double x)
+  {
+    evaluations++;
+    return function.evaluate(x);
+  }
+
+  public long getEvaluations()
+  {
+    return evaluations;
+  }
+
+  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  {
+    AdaptiveScanner scanner = new AdaptiveScanner(function, scanBudget);
+    ArrayList<Solution> brackets = scanner.solve(a, b);
+    evaluations = scanner.getEvaluations();
+
+    ArrayList<Solution> roots = new ArrayList<Solution>();
+    for (Solution bracket : brackets) {
+      long start = System.nanoTime();
+      long before = evaluations;
+
+      Solution root = refine(bracket, epsilon);
+      root.setEvaluations(evaluations - before);
+      root.setTime(System.nanoTime() - start);
+      roots.add(root);
+    }
+
+    return roots;
+  }
+
+  /**
+   * Returns f at the start of a bracket, evaluating it only if the scan
+   * that found the bracket didn't keep it.
+   * @param bracket the interval [a, b] where f changes sign
+   * @return double, f(a)
+   */
+  protected double fa(Solution bracket)
+  {
+    double fa = bracket.getFa();
+    return Double.isNaN(fa) ? f(bracket.getA()) : fa;
+  }
+
+  /**
+   * Returns f at the end of a bracket, see fa().
+   * @param bracket the interval [a, b] where f changes sign
+   * @return double, f(b)
+   */
+  protected double fb(Solution bracket)
+  {
+    double fb = bracket.getFb();
+    return Double.isNaN(fb) ? f(bracket.getB()) : fb;
+  }
+
+  /**
+   * Marks s DIVERGED when its root lies outside the bracket it was refined
+   * from. Open methods started inside a bracket may jump to another root,
+   * already reported by its own bracket, or across a pole.
+   * @param s the result of refining bracket
+   * @param bracket the interval [a, b] where f changes sign
+   * @return Solution, s
+   */
+  protected static Solution confine(Solution s, Solution bracket)
+  {
+    if (s.hasRoot() && !(s.getX() >= bracket.getA() &&
+                         s.getX() <= bracket.getB()))
+      s.setStatus(Solution.DIVERGED);
+    return s;
+  }
+
+  /**
+   * Refines a bracket found by the AdaptiveScanner.
+   * @param bracket the interval [a, b] where f changes sign
+   * @param epsilon error tolerance
+   * @return Solution, the root found, or the last iterate with a status
+   *         telling why it isn't one
+   */
+  protected abstract Solution refine(Solution bracket, double epsilon);
+}
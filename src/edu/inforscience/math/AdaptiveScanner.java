@@ -0,0 +1,360 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Finds brackets of the roots of f by adaptive subdivision. [a, b] is
+ * sampled on a coarse grid first, then the segment that looks most likely
+ * to hide roots is halved, over and over, until no segment looks suspicious
+ * or the evaluation budget runs out.
+ *
+ * How suspicious a segment is comes from its neighbours: the change of
+ * slope across it estimates how far f bends away from the chord, and that
+ * is compared with the distance of f to zero at its ends. Flat and straight
+ * regions are left coarse, oscillating ones and the neighbourhood of
+ * shallow extrema, where pairs of close roots hide, are refined. Sampling
+ * alone can be fooled by periodic functions and poles, so a segment is also
+ * split while interval arithmetic allows a root in it and its enclosure is
+ * unbounded or keeps getting tighter; segments it proves free of roots are
+ * never split. Wide segments go first, so an exhausted budget leaves the
+ * scan uniformly refined rather than deep in one place.
+ */
+public class AdaptiveScanner implements RootFinder {
+
+  public static final int DEFAULT_BUDGET = 1000;
+
+  /** Grid intervals sampled before refining. */
+  public static final int INITIAL_INTERVALS = 64;
+
+  /** Segments are split while bending/distance to zero is above this. */
+  public static final double SPLIT_THRESHOLD = 0.5;
+
+  /** Times a grid interval may be halved. */
+  public static final int MAX_DEPTH = 30;
+
+  /** Times a grid interval with a sign change may be halved. */
+  public static final int BRACKET_DEPTH = 8;
+
+  /** Score of the segments the sampling heuristic can't judge. */
+  private static final double MAX_SCORE = 1000;
+
+  private final Function function;
+  private int budget;
+  private long evaluations;
+  private double start;
+  private final double[] bounds;
+  /** The leftmost segment */
+  private Segment first;
+
+  public AdaptiveScanner(Function f)
+  {
+    this(f, DEFAULT_BUDGET);
+  }
+
+  /**
+   * @param f the function
+   * @param budget maximum number of evaluations of f per scan, at least
+   *               INITIAL_INTERVALS + 1
+   */
+  public AdaptiveScanner(Function f, int budget)
+  {
+    function = f;
+    bounds = new double[2];
+    setBudget(budget);
+  }
+
+  public int getBudget()
+  {
+    return budget;
+  }
+
+  public void setBudget(int budget)
+  {
+    this.budget = java.lang.Math.max(budget, INITIAL_INTERVALS + 1);
+  }
+
+  public String getName()
+  {
+    return "Adaptive scan";
+  }
+
+  public long getEvaluations()
+  {
+    return evaluations;
+  }
+
+  /**
+   * Returns the brackets of the roots in [a, b], see solve(a, b).
+   * @param epsilon unused, the brackets are as narrow as the budget allows
+   */
+  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  {
+    return solve(a, b);
+  }
+
+  /**
+   * Returns the intervals of [a, b] where f is defined at both ends and
+   * changes sign.
+   * @param a start of interval, inclusive
+   * @param b end of interval, inclusive
+   * @return ArrayList&lt;Solution&gt;, the brackets in ascending order
+   */
+  public ArrayList<Solution> solve(double a, double b)
+  {
+    start = a;
+    evaluations = 0;
+
+    first = sample(a, b);
+    PriorityQueue<Segment> queue = new PriorityQueue<Segment>(
+        INITIAL_INTERVALS, new Comparator<Segment>() {
+      @Override
+      public int compare(Segment s, Segment t)
+      {
+        return Double.compare(t.score * (t.x1 - t.x0),
+                              s.score * (s.x1 - s.x0));
+      }
+    });
+
+    for (Segment s = first; s != null; s = s.next)
+      schedule(queue, s);
+
+    while (evaluations < budget && !queue.isEmpty())
+      split(queue, queue.poll());
+
+    ArrayList<Solution> solutions = new ArrayList<Solution>();
+    for (Segment s = first; s != null; s = s.next)
+      if (isBracket(s) && (s.y0 != 0 || s.x0 == start) &&
+          mayHaveRoot(s.x0, s.x1))
+        solutions.add(bracket(s));
+    first = null;
+
+    return solutions;
+  }
+
+  /**
+   * Samples the initial grid, returns the first of its linked segments.
+   */
+  private Segment sample(double a, double b)
+  {
+    int n = INITIAL_INTERVALS + 1;
+    double dx = (b - a)/INITIAL_INTERVALS;
+    double[] xs = new double[n];
+    double[] y = new double[n];
+
+    for (int i = 0; i < n; i++)
+      xs[i] = a + i * dx;
+    xs[n - 1] = b;
+    function.evaluate(xs, y);
+    evaluations += n;
+
+    Segment head = null, last = null;
+    for (int i = 1; i < n; i++) {
+      Segment s = new Segment(xs[i - 1], xs[i], y[i - 1], y[i], 0,
+                              Double.POSITIVE_INFINITY);
+      if (last == null)
+        head = s;
+      else
+        link(last, s);
+      last = s;
+    }
+
+    return head;
+  }
+
+  /**
+   * Halves s and rescores its neighbours, whose bending estimate depends
+   * on the slope of s.
+   */
+  private void split(PriorityQueue<Segment> queue, Segment s)
+  {
+    double middle = (s.x0 + s.x1)/2;
+    double ym = function.evaluate(middle);
+    evaluations++;
+
+    Segment left = new Segment(s.x0, middle, s.y0, ym, s.depth + 1,
+                               s.enclosure);
+    Segment right = new Segment(middle, s.x1, ym, s.y1, s.depth + 1,
+                                s.enclosure);
+    Segment previous = s.previous, next = s.next;
+
+    link(left, right);
+    if (previous != null)
+      link(previous, left);
+    else
+      first = left;
+    if (next != null)
+      link(right, next);
+
+    schedule(queue, left);
+    schedule(queue, right);
+    if (previous != null && queue.remove(previous))
+      schedule(queue, previous);
+    if (next != null && queue.remove(next))
+      schedule(queue, next);
+  }
+
+  /**
+   * Scores s and queues it if it is worth splitting.
+   */
+  private void schedule(PriorityQueue<Segment> queue, Segment s)
+  {
+    double middle = (s.x0 + s.x1)/2;
+    if (middle <= s.x0 || middle >= s.x1)
+      return;
+
+    s.score = score(s);
+    if (s.score > SPLIT_THRESHOLD)
+      queue.add(s);
+  }
+
+  /**
+   * Returns how likely s is to hide roots, above SPLIT_THRESHOLD when it
+   * should be split.
+   */
+  private double score(Segment s)
+  {
+    if (s.depth >= MAX_DEPTH)
+      return 0;
+
+    if (Double.isNaN(s.y0) || Double.isNaN(s.y1)) {
+      // Roots may lie close to the border of the domain
+      return enclose(s) ? MAX_SCORE : 0;
+    }
+
+    double slope = slope(s);
+    double bending = 0;
+    if (s.previous != null && !Double.isNaN(slope(s.previous)))
+      bending = Math.abs(slope - slope(s.previous));
+    if (s.next != null && !Double.isNaN(slope(s.next)))
+      bending = java.lang.Math.max(bending, Math.abs(slope - slope(s.next)));
+    bending *= s.x1 - s.x0;
+
+    // A bracket bending strongly may hold three roots, one whose
+    // enclosure is unbounded or much wider than its samples may hold poles
+    if (isBracket(s)) {
+      if (s.depth >= BRACKET_DEPTH)
+        return 0;
+      double score = java.lang.Math.min(
+          bending / (Math.abs(s.y0) + Math.abs(s.y1)), MAX_SCORE);
+      if (enclose(s) && (Double.isInfinite(s.enclosure) ||
+                         s.enclosure > 2 * Math.abs(s.y1 - s.y0) &&
+                         s.enclosure <= 0.9 * s.parentEnclosure))
+        score = java.lang.Math.max(score, 1);
+      return score;
+    }
+
+    if (!enclose(s))
+      return 0;
+
+    double distance = java.lang.Math.min(Math.abs(s.y0), Math.abs(s.y1));
+    double score = java.lang.Math.min(bending / distance, MAX_SCORE);
+    if (s.depth == 0 || s.enclosure <= 0.9 * s.parentEnclosure)
+      score = java.lang.Math.max(score, 1);
+
+    return score;
+  }
+
+  /**
+   * Encloses f over s once, returns false if it has no roots there.
+   */
+  private boolean enclose(Segment s)
+  {
+    if (Double.isNaN(s.enclosure)) {
+      if (mayHaveRoot(s.x0, s.x1))
+        s.enclosure = bounds[1] - bounds[0];
+      else
+        s.enclosure = -1;
+    }
+
+    return s.enclosure >= 0;
+  }
+
+  /**
+   * Returns s as a bracket, with the values of f at its ends so refining
+   * it doesn't evaluate them again.
+   */
+  private static Solution bracket(Segment s)
+  {
+    Solution bracket = new Solution(s.x0, s.x1, (s.x0 + s.x1)/2,
+                                    Solution.BRACKETED);
+    bracket.setFa(s.y0);
+    bracket.setFb(s.y1);
+    return bracket;
+  }
+
+  private static double slope(Segment s)
+  {
+    return (s.y1 - s.y0)/(s.x1 - s.x0);
+  }
+
+  private static boolean isBracket(Segment s)
+  {
+    return !Double.isNaN(s.y0) && !Double.isNaN(s.y1) &&
+           Math.sign(s.y0) != Math.sign(s.y1);
+  }
+
+  private static void link(Segment s, Segment t)
+  {
+    s.next = t;
+    t.previous = s;
+  }
+
+  /**
+   * Tests if interval arithmetic allows f to vanish in [x0, x1].
+   */
+  private boolean mayHaveRoot(double x0, double x1)
+  {
+    if (!function.enclose(x0, x1, bounds))
+      return false;
+
+    return bounds[0] <= 0 && bounds[1] >= 0;
+  }
+
+  /**
+   * A sampled segment, linked to its neighbours.
+   */
+  private static class Segment {
+    final double x0, x1, y0, y1;
+    final int depth;
+    /** Width of the enclosure of the segment that was split into this */
+    final double parentEnclosure;
+    /** Width of the enclosure of f, NaN until computed, -1 if no roots */
+    double enclosure;
+    Segment previous, next;
+    double score;
+
+    Segment(double x0, double x1, double y0, double y1, int depth,
+            double parentEnclosure)
+    {
+      this.x0 = x0;
+      this.x1 = x1;
+      this.y0 = y0;
+      this.y1 = y1;
+      this.depth = depth;
+      this.parentEnclosure = parentEnclosure;
+      enclosure = Double.NaN;
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Elementary functions on BigDecimal, computed to the precision of a
+ * MathContext. Every function works internally with a few guard digits and
+ * rounds its result once, so results are correct to within an ulp or two of
+ * the requested precision.
+ *
+ * Values that cannot be represented, e.g. the logarithm of a negative number,
+ * throw ArithmeticException like the operators of BigDecimal do.
+ */
+public class BigMath {
+
+  public static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+  /** Arguments of exp larger than this overflow the scale of a BigDecimal. */
+  private static final BigDecimal MAX_EXPONENT = BigDecimal.valueOf(1e9);
+  private static final int GUARD_DIGITS = 10;
+  private static final int MAX_FACTORIAL = 10000;
+  private static final int MAX_ITERATIONS = 20;
+
+  private static volatile BigDecimal pi = BigDecimal.ZERO;
+
+
+  private BigMath()
+  {
+  }
+
+  private static MathContext extend(MathContext mc, int digits)
+  {
+    return new MathContext(mc.getPrecision() + digits, RoundingMode.HALF_EVEN);
+  }
+
+  /**
+   * Returns pi to the given precision with Machin's formula,
+   * pi = 16 atan(1/5) - 4 atan(1/239). The last value computed is kept, so
+   * asking again for the same or a lower precision is cheap.
+   * @param mc precision of the result
+   * @return BigDecimal, pi
+   */
+  public static BigDecimal pi(MathContext mc)
+  {
+    BigDecimal p = pi;
+    if (p.precision() < mc.getPrecision() + GUARD_DIGITS) {
+      MathContext work = extend(mc, 2 * GUARD_DIGITS);
+      p = arctanInverse(5, work).multiply(BigDecimal.valueOf(16))
+          .subtract(arctanInverse(239, work).multiply(BigDecimal.valueOf(4)))
+          .round(work);
+      pi = p;
+    }
+
+    return p.round(mc);
+  }
+
+  // atan(1/n) = 1/n - 1/(3 n^3) + 1/(5 n^5) - ...
+  private static BigDecimal arctanInverse(int n, MathContext mc)
+  {
+    BigDecimal n2 = BigDecimal.valueOf((long)n * n);
+    BigDecimal power = BigDecimal.ONE.divide(BigDecimal.valueOf(n), mc);
+    BigDecimal sum = power;
+    BigDecimal epsilon = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 1);
+
+    for (int k = 1; power.compareTo(epsilon) > 0; k++) {
+      power = power.divide(n2, mc);
+      BigDecimal term = power.divide(BigDecimal.valueOf(2 * k + 1), mc);
+      sum = k % 2 == 1 ? sum.subtract(term, mc) : sum.add(term, mc);
+    }
+
+    return sum;
+  }
+
+  /**
+   * Returns e^x. The argument is halved k times until it is below one, the
+   * Taylor series is summed there and the result is squared k times.
+   * @param x exponent, |x| up to 1e9
+   * @param mc precision of the result
+   * @return BigDecimal, e^x
+   */
+  public static BigDecimal exp(BigDecimal x, MathContext mc)
+  {
+    if (x.signum() == 0)
+      return BigDecimal.ONE;
+    if (x.abs().compareTo(MAX_EXPONENT) > 0)
+      throw new ArithmeticException("exp overflow");
+
+    int k = 0;
+    BigDecimal r = x;
+    while (r.abs().compareTo(BigDecimal.ONE) > 0) {
+      r = r.divide(TWO);
+      k++;
+    }
+
+    // Each squaring doubles the relative error
+    MathContext work = extend(mc, GUARD_DIGITS + k / 3);
+    BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision() + 1);
+    BigDecimal term = BigDecimal.ONE;
+    BigDecimal sum = BigDecimal.ONE;
+
+    for (int n = 1; term.abs().compareTo(epsilon) > 0; n++) {
+      term = term.multiply(r).divide(BigDecimal.valueOf(n), work);
+      sum = sum.add(term, work);
+    }
+
+    for (int i = 0; i < k; i++)
+      sum = sum.multiply(sum, work);
+
+    return sum.round(mc);
+  }
+
+  /**
+   * Returns the natural logarithm of x, refining the double approximation
+   * with Halley's iteration y = y + 2 (x - e^y) / (x + e^y), which triples
+   * the number of correct digits each time, so a few steps are enough.
+   * @param x argument, must be positive
+   * @param mc precision of the result
+   * @return BigDecimal, ln x
+   */
+  public static BigDecimal log(BigDecimal x, MathContext mc)
+  {
+    if (x.signum() <= 0)
+      throw new ArithmeticException("log of a non positive number");
+    if (x.compareTo(BigDecimal.ONE) == 0)
+      return BigDecimal.ZERO;
+
+    MathContext work = extend(mc, GUARD_DIGITS);
+
+    // x = m 10^e with m in [1, 10), so that m fits in a double
+    int e = x.precision() - x.scale() - 1;
+    double m = x.movePointLeft(e).doubleValue();
+    BigDecimal y = new BigDecimal(java.lang.Math.log(m)
+                                  + e * java.lang.Math.log(10));
+
+    BigDecimal epsilon = BigDecimal.ONE.movePointLeft(work.getPrecision());
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      BigDecimal ey = exp(y, work);
+      BigDecimal delta = TWO.multiply(x.subtract(ey, work))
+                            .divide(x.add(ey, work), work);
+      y = y.add(delta, work);
+
+      if (delta.abs().compareTo(y.abs().multiply(epsilon)) <= 0)
+        break;
+    }
+
+    return y.round(mc);
+  }
+
+  /**
+   * Returns the logarithm of x to base 10.
+   * @param x argument, must be positive
+   * @param mc precision of the result
+   * @return BigDecimal, log10 x
+   */
+  public static BigDecimal log10(BigDecimal x, MathContext mc)
+  {
+    MathContext work = extend(mc, GUARD_DIGITS);
+    return log(x, work).divide(log(BigDecimal.TEN, work), mc);
+  }
+
+  /**
+   * Reduces x to [-pi, pi]. The quotient x / 2pi needs as many extra
+   * digits as its integer part has.
+   */
+  private static BigDecimal reduce(BigDecimal x, MathContext mc)
+  {
+    int e = x.precision() - x.scale();
+    if (e <= 0)
+      return x;
+
+    MathContext work = extend(mc, e + GUARD_DIGITS);
+    BigDecimal twoPi = pi(work).multiply(TWO);
+    BigDecimal k = x.divide(twoPi, work).setScale(0, RoundingMode.HALF_EVEN);
+
+    return x.subtract(k.multiply(twoPi), work);
+  }
+
+  /**
+   * Returns the sine of x, the argument is reduced to [-pi, pi] and the
+   * Taylor series is summed there.
+   * @param x angle in radians
+   * @param mc precision of the result
+   * @return BigDecimal, sin x
+   */
+  public static BigDecimal sin(BigDecimal x, MathContext mc)
+  {
+    MathContext work = extend(mc, GUARD_DIGITS);
+    BigDecimal r = reduce(x, work);
+
+    return series(r, r, 1, work).round(mc);
+  }
+
+  /**
+   * Returns the cosine of x, computed like sin.
+   * @param x angle in radians
+   * @param mc precision of the result
+   * @return BigDecimal, cos x
+   */
+  public static BigDecimal cos(BigDecimal x, MathContext mc)
+  {
+    MathContext work = extend(mc, GUARD_DIGITS);
+    BigDecimal r = reduce(x, work);
+
+    return series(r, BigDecimal.ONE, 0, work).round(mc);
+  }
+
+  // Sum of term_0 + term_1 + ... with term_{k+1} = -term_k r^2 / ((n+1)(n+2)),
+  // until the terms are negligible relative to the sum
+  private static BigDecimal series(BigDecimal r, BigDecimal term, int n,
+                                   MathContext mc)
+  {
+    BigDecimal r2 = r.multiply(r, mc).negate();
+    BigDecimal epsilon = BigDecimal.ONE.movePointLeft(mc.getPrecision() + 1);
+    BigDecimal sum = term;
+
+    while (term.abs().compareTo(sum.abs().multiply(epsilon)) > 0) {
+      term = term.multiply(r2)
+                 .divide(BigDecimal.valueOf((long)(n + 1) * (n + 2)), mc);
+      sum = sum.add(term, mc);
+      n += 2;
+    }
+
+    return sum;
+  }
+
+  /**
+   * Returns the tangent of x.
+   * @param x angle in radians
+   * @param mc precision of the result
+   * @return BigDecimal, tan x
+   */
+  public static BigDecimal tan(BigDecimal x, MathContext mc)
+  {
+    MathContext work = extend(mc, GUARD_DIGITS);
+    return sin(x, work).divide(cos(x, work), mc);
+  }
+
+  /**
+   * Returns the square root of x.
+   * @param x argument, must not be negative
+   * @param mc precision of the result
+   * @return BigDecimal, sqrt(x)
+   */
+  public static BigDecimal sqrt(BigDecimal x, MathContext mc)
+  {
+    return x.sqrt(mc);
+  }
+
+  /**
+   * Returns x^p. Integer exponents are computed by repeated squaring and
+   * allow negative bases, other exponents are computed as e^(p ln x).
+   * @param x base
+   * @param p exponent
+   * @param mc precision of the result
+   * @return BigDecimal, x^p
+   */
+  public static BigDecimal pow(BigDecimal x, BigDecimal p, MathContext mc)
+  {
+    if (p.signum() == 0)
+      return BigDecimal.ONE;
+
+    if (isInteger(p) && p.abs().compareTo(MAX_EXPONENT) <= 0)
+      return x.pow(p.intValueExact(), mc);
+
+    if (x.signum() == 0) {
+      if (p.signum() > 0)
+        return BigDecimal.ZERO;
+      throw new ArithmeticException("division by zero");
+    }
+
+    MathContext work = extend(mc, GUARD_DIGITS);
+    return exp(p.multiply(log(x, work), work), mc);
+  }
+
+  private static boolean isInteger(BigDecimal x)
+  {
+    return x.signum() == 0 || x.scale() <= 0
+        || x.stripTrailingZeros().scale() <= 0;
+  }
+
+  /**
+   * Returns n! for the integer part of x, exact like the operators of the
+   * parser for small n, 1 for negative n.
+   * @param x argument
+   * @param mc precision of the result
+   * @return BigDecimal, n!
+   */
+  public static BigDecimal factorial(BigDecimal x, MathContext mc)
+  {
+    if (x.compareTo(BigDecimal.valueOf(MAX_FACTORIAL)) > 0)
+      throw new ArithmeticException("factorial too large");
+
+    int n = x.intValue();
+    BigInteger f = BigInteger.ONE;
+    while (n > 1) f = f.multiply(BigInteger.valueOf(n--));
+
+    return new BigDecimal(f, mc);
+  }
+}
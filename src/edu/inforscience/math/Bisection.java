@@ -19,58 +19,88 @@
 package edu.inforscience.math;
 
 import edu.inforscience.lang.Function;
-import edu.inforscience.lang.Parser;
-import java.util.ArrayList;
 
-public class Bisection {
+public class Bisection extends AbstractRootFinder {
 
   public static final int MAX_ITERATIONS = 200;
-  private Function function;
+  private final RootPolisher polisher;
 
   public Bisection(Function f)
   {
-    function = f;
+    super(f);
+    polisher = new RootPolisher(f);
   }
 
-  public double f(double x)
+  public String getName()
   {
-    return function.evaluate(x);
+    return "Bisection";
   }
 
 
+  /**
+   * Halves [min, max] until |f| at the midpoint is below epsilon. f(min)
+   * is carried from one step to the next, every step costs a single
+   * evaluation.
+   * @param min start of the bracket
+   * @param max end of the bracket
+   * @param epsilon error tolerance on |f(x)|
+   * @param iterations iterations already done
+   * @return Solution, the root or the midpoint of the last bracket with
+   *         status MAX_ITERATIONS
+   */
   public Solution find(double min, double max, double epsilon, int iterations)
   {
-    if (iterations == MAX_ITERATIONS)
-      return new Solution(min, max, (min + max)/2);
-
-    double x = (min + max)/2;
-    double fx = f(x);
-
-    if (Math.abs(fx) < epsilon) {
-      return new Solution(min, max, x);
-    } else {
-      double fa = f(min);
-
-      if (Math.sign(fa) != Math.sign(fx))
-        return find(min, x, epsilon, iterations + 1);
-      else
-        return find(x, max, epsilon, iterations + 1);
-    }
+    return find(min, f(min), max, epsilon, iterations);
   }
 
-  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  /**
+   * Same as find(min, max, epsilon, iterations) with f(min) already known.
+   * @param min start of the bracket
+   * @param fMin f(min)
+   * @param max end of the bracket
+   * @param epsilon error tolerance on |f(x)|
+   * @param iterations iterations already done
+   * @return Solution, the root or the midpoint of the last bracket with
+   *         status MAX_ITERATIONS
+   */
+  public Solution find(double min, double fMin, double max, double epsilon,
+                       int iterations)
   {
-    BruteForce bruteForce = new BruteForce(function);
-    ArrayList<Solution> possibleIntervals = bruteForce.solve(a, b);
-
-    ArrayList<Solution> roots = new ArrayList<Solution>();
-
-    for (int i = 0; i < possibleIntervals.size(); i++) {
-      Solution sol = possibleIntervals.get(i);
-      roots.add(find(sol.getA(), sol.getB(), epsilon, 0));
+    while (iterations < MAX_ITERATIONS) {
+      double x = (min + max)/2;
+      // Nothing left to halve, f doesn't reach epsilon in double
+      if (x <= min || x >= max)
+        break;
+
+      double fx = f(x);
+      iterations++;
+
+      if (Math.abs(fx) < epsilon) {
+        Solution s = new Solution(min, max, x);
+        s.setIterations(iterations);
+        s.setResidual(Math.abs(fx));
+        return s;
+      }
+
+      if (Math.sign(fMin) != Math.sign(fx)) {
+        max = x;
+      } else {
+        min = x;
+        fMin = fx;
+      }
     }
 
-    return roots;
+    Solution s = new Solution(min, max, (min + max)/2, Solution.MAX_ITERATIONS);
+    s.setIterations(iterations);
+    return s;
   }
-}
 
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
+  {
+    Solution s = find(bracket.getA(), fa(bracket), bracket.getB(), epsilon, 0);
+    if (s.hasRoot())
+      evaluations += polisher.polish(s);
+    return s;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+/**
+ * Brent's method. Works on a bracket like bisection and never leaves it,
+ * but takes inverse quadratic interpolation or secant steps whenever they
+ * land well inside it, falling back to bisection when they converge
+ * slowly. It is as safe as bisection and usually as fast as the secant
+ * method.
+ */
+public class Brent extends AbstractRootFinder {
+
+  public static final int MAX_ITERATIONS = 200;
+
+  /** Relative machine precision used in the tolerance on x. */
+  private static final double EPS = java.lang.Math.ulp(1.0);
+
+  private final RootPolisher polisher;
+
+  public Brent(Function f)
+  {
+    super(f);
+    polisher = new RootPolisher(f);
+  }
+
+  public String getName()
+  {
+    return "Brent";
+  }
+
+  /**
+   * Finds a root in [a, b], where f must change sign.
+   * @param a start of the bracket
+   * @param b end of the bracket
+   * @param epsilon error tolerance on |f(x)|, the search also stops when
+   *                the bracket can't be narrowed any more in double
+   * @return Solution, the root; DIVERGED if f has a discontinuity rather
+   *         than a root in [a, b], MAX_ITERATIONS if it took too long
+   */
+  public Solution find(double a, double b, double epsilon)
+  {
+    return find(a, f(a), b, f(b), epsilon);
+  }
+
+  /**
+   * Same as find(a, b, epsilon) with f(a) and f(b) already known.
+   * @param a start of the bracket
+   * @param fa f(a)
+   * @param b end of the bracket
+   * @param fb f(b)
+   * @param epsilon error tolerance on |f(x)|
+   * @return Solution, the root; DIVERGED if f has a discontinuity rather
+   *         than a root in [a, b], MAX_ITERATIONS if it took too long
+   */
+  public Solution find(double a, double fa, double b, double fb,
+                       double epsilon)
+  {
+    double initial = java.lang.Math.min(Math.abs(fa), Math.abs(fb));
+    // Absolute tolerance on x, without it a bracket around 0 never ends
+    double t = EPS * java.lang.Math.max(Math.abs(a), Math.abs(b));
+    t = java.lang.Math.max(t, Double.MIN_NORMAL);
+    double c = a, fc = fa;
+    double d = b - a, e = d;
+
+    for (int iterations = 0; iterations < MAX_ITERATIONS; iterations++) {
+      // b is the best approximation and [b, c] the bracket
+      if (Math.sign(fb) == Math.sign(fc)) {
+        c = a;
+        fc = fa;
+        d = e = b - a;
+      }
+      if (Math.abs(fc) < Math.abs(fb)) {
+        a = b;
+        b = c;
+        c = a;
+        fa = fb;
+        fb = fc;
+        fc = fa;
+      }
+
+      double tolerance = 2 * EPS * Math.abs(b) + 0.5 * t;
+      double m = (c - b)/2;
+
+      if (Math.abs(fb) < epsilon || fb == 0)
+        return solution(b, c, b, Solution.CONVERGED, iterations, fb);
+      if (Math.abs(m) <= tolerance) {
+        // The bracket collapsed on a jump of f, e.g. a pole
+        int status = Math.abs(fb) > initial ? Solution.DIVERGED
+                                            : Solution.CONVERGED;
+        return solution(b, c, b, status, iterations, fb);
+      }
+
+      if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb)) {
+        double p, q, r, s = fb/fa;
+
+        if (a == c) {
+          // Secant step
+          p = 2 * m * s;
+          q = 1 - s;
+        } else {
+          // Inverse quadratic interpolation
+          q = fa/fc;
+          r = fb/fc;
+          p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+          q = (q - 1) * (r - 1) * (s - 1);
+        }
+
+        if (p > 0)
+          q = -q;
+        else
+          p = -p;
+
+        // Accept the step if it falls inside the bracket and shrinks faster
+        // than the one before the last
+        if (2 * p < java.lang.Math.min(3 * m * q - Math.abs(tolerance * q),
+                                       Math.abs(e * q))) {
+          e = d;
+          d = p/q;
+        } else {
+          d = m;
+          e = m;
+        }
+      } else {
+        d = m;
+        e = m;
+      }
+
+      a = b;
+      fa = fb;
+      if (Math.abs(d) > tolerance)
+        b += d;
+      else
+        b += m > 0 ? tolerance : -tolerance;
+      fb = f(b);
+    }
+
+    return solution(b, c, b, Solution.MAX_ITERATIONS, MAX_ITERATIONS, fb);
+  }
+
+  private static Solution solution(double b, double c, double x, int status,
+                                   int iterations, double fx)
+  {
+    Solution s = new Solution(java.lang.Math.min(b, c),
+                              java.lang.Math.max(b, c), x, status);
+    s.setIterations(iterations);
+    s.setResidual(Math.abs(fx));
+    return s;
+  }
+
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
+  {
+    Solution s = find(bracket.getA(), fa(bracket), bracket.getB(), fb(bracket),
+                      epsilon);
+    if (s.hasRoot())
+      evaluations += polisher.polish(s);
+    return s;
+  }
+}
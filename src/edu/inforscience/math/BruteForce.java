@@ -22,12 +22,25 @@ import edu.inforscience.lang.Function;
 import edu.inforscience.lang.Parser;
 
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
-public class BruteForce {
+public class BruteForce implements RootFinder {
 
   private Function function;
   public static final int MAX_INTERVALS = 997; // A prime number
 
+  /** Grid intervals sampled together once a range can't be discarded. */
+  public static final int LEAF_INTERVALS = 32;
+
+  /** Times a grid interval may be halved looking for close pairs of roots. */
+  public static final int MAX_REFINEMENT = 12;
+
+  /** Grid intervals below which a range is scanned by a single thread. */
+  public static final int SEQUENTIAL_INTERVALS = 4 * LEAF_INTERVALS;
+
+  private long evaluations;
+
   public BruteForce(Function f)
   {
     function = f;
@@ -35,33 +48,200 @@ public class BruteForce {
 
   public double f(double x)
   {
+    evaluations++;
     return function.evaluate(x);
   }
 
+  public String getName()
+  {
+    return "Brute force";
+  }
+
+  public long getEvaluations()
+  {
+    return evaluations;
+  }
+
+  /**
+   * Returns the brackets of the roots in [a, b], see solve(a, b).
+   * @param epsilon unused, the brackets are as wide as the grid allows
+   */
+  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  {
+    return solve(a, b);
+  }
+
 
   /**
    * Returns the real solutions of f(x) in the closed interval [a, b].
+   *
+   * The interval is divided in MAX_INTERVALS pieces, ranges of pieces where
+   * interval arithmetic proves f has no roots are discarded without
+   * evaluating f, the remaining pieces are sampled and those where f is
+   * defined at both ends and changes sign are returned. Pieces without a
+   * sign change that may still contain roots are halved up to
+   * MAX_REFINEMENT times, so pairs of roots closer than
+   * (b - a)/MAX_INTERVALS are found too.
+   *
+   * Ranges are scanned in parallel in the common fork-join pool. Grid
+   * points are computed from their index, and adjacent ranges share the
+   * grid point at their seam, so every piece is sampled by exactly one
+   * range and the result doesn't depend on how the work was split.
    * @param a start of interval, inclusive
    * @param b end of interval, inclusive
+   * @return ArrayList&lt;Solution&gt;, the brackets in ascending order
    */
   public ArrayList<Solution> solve(double a, double b)
   {
-    double x, prev, current;
-    double dx = (b - a)/MAX_INTERVALS;
-    ArrayList<Solution> solutions = new ArrayList<Solution>();
+    Scan scan = new Scan(function, a, (b - a)/MAX_INTERVALS, 0, MAX_INTERVALS);
+    ArrayList<Solution> solutions = ForkJoinPool.commonPool().invoke(scan);
+    evaluations = scan.evaluations;
+
+    return solutions;
+  }
+
+  /**
+   * Scans the grid points first to last. Wide ranges are split in two
+   * tasks, the brackets of the left one come first. A scan holds all it
+   * needs, so concurrent calls to solve() don't share state.
+   */
+  @SuppressWarnings("serial")
+  private static class Scan extends RecursiveTask<ArrayList<Solution>> {
+
+    private final Function function;
+    /** Grid point 0 and the distance between grid points */
+    private final double start;
+    private final double dx;
+    private final int first;
+    private final int last;
+    private final double[] bounds;
+    private ArrayList<Solution> solutions;
+    private long evaluations;
+
+    Scan(Function function, double start, double dx, int first, int last)
+    {
+      this.function = function;
+      this.start = start;
+      this.dx = dx;
+      this.first = first;
+      this.last = last;
+      bounds = new double[2];
+    }
+
+    @Override
+    protected ArrayList<Solution> compute()
+    {
+      solutions = new ArrayList<Solution>();
+
+      if (last - first <= SEQUENTIAL_INTERVALS) {
+        scan(first, last);
+      } else if (mayHaveRoot(x(first), x(last), Double.POSITIVE_INFINITY)) {
+        int middle = (first + last) >>> 1;
+        Scan left = new Scan(function, start, dx, first, middle);
+        Scan right = new Scan(function, start, dx, middle, last);
+        invokeAll(left, right);
+
+        solutions.addAll(left.getRawResult());
+        solutions.addAll(right.getRawResult());
+        evaluations = left.evaluations + right.evaluations;
+      }
 
-    prev = f(a);
-    for (x = a + dx; x <= b; x += dx) {
-      current = f(x);
+      return solutions;
+    }
+
+    /**
+     * Returns grid point i, computed from its index so errors don't pile
+     * up.
+     */
+    private double x(int i)
+    {
+      return start + i * dx;
+    }
 
-      if (Math.sign(prev) != Math.sign(current)) {
-        solutions.add(new Solution(x - dx, x, x - 0.5 * dx));
+    /**
+     * Looks for roots between grid points first and last, recursing only
+     * into halves that may contain them.
+     */
+    private void scan(int first, int last)
+    {
+      if (!mayHaveRoot(x(first), x(last), Double.POSITIVE_INFINITY))
+        return;
+
+      if (last - first <= LEAF_INTERVALS) {
+        sample(first, last);
+      } else {
+        int middle = (first + last) >>> 1;
+        scan(first, middle);
+        scan(middle, last);
       }
-      prev = current;
     }
 
-    return solutions;
-  }
+    private void sample(int first, int last)
+    {
+      int n = last - first + 1;
+      double[] xs = new double[n];
+      double[] y = new double[n];
 
-}
+      for (int i = 0; i < n; i++)
+        xs[i] = x(first + i);
+      function.evaluate(xs, y);
+      evaluations += n;
+
+      for (int i = 1; i < n; i++)
+        refine(xs[i - 1], xs[i], y[i - 1], y[i], MAX_REFINEMENT,
+               Double.POSITIVE_INFINITY);
+    }
 
+    /**
+     * Adds the brackets found in [x0, x1], given f(x0) = y0 and f(x1) = y1.
+     * @param depth remaining halvings
+     * @param width width of the enclosure of the enclosing interval,
+     *              infinite for grid intervals
+     */
+    private void refine(double x0, double x1, double y0, double y1,
+                        int depth, double width)
+    {
+      if (!Double.isNaN(y0) && !Double.isNaN(y1) &&
+          Math.sign(y0) != Math.sign(y1)) {
+        // A zero at x0 was already reported with the interval ending there
+        if ((y0 != 0 || x0 == start) &&
+            mayHaveRoot(x0, x1, Double.POSITIVE_INFINITY)) {
+          Solution s = new Solution(x0, x1, (x0 + x1)/2, Solution.BRACKETED);
+          s.setFa(y0);
+          s.setFb(y1);
+          solutions.add(s);
+        }
+        return;
+      }
+
+      if (depth == 0 || !mayHaveRoot(x0, x1, width))
+        return;
+
+      // Halving won't help where nothing is known about f, e.g. around poles
+      double enclosure = bounds[1] - bounds[0];
+      if (Double.isInfinite(enclosure))
+        return;
+
+      double middle = (x0 + x1)/2;
+      double ym = function.evaluate(middle);
+      evaluations++;
+
+      refine(x0, middle, y0, ym, depth - 1, enclosure);
+      refine(middle, x1, ym, y1, depth - 1, enclosure);
+    }
+
+    /**
+     * Tests if f may vanish in [x0, x1]. The test also fails when the
+     * enclosure isn't clearly tighter than width, then halving the interval
+     * doesn't tell anything new.
+     */
+    private boolean mayHaveRoot(double x0, double x1, double width)
+    {
+      if (!function.enclose(x0, x1, bounds))
+        return false;
+
+      return bounds[0] <= 0 && bounds[1] >= 0 &&
+             (Double.isInfinite(width) || bounds[1] - bounds[0] <= 0.9 * width);
+    }
+  }
+}
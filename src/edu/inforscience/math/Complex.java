@@ -0,0 +1,142 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+/**
+ * An immutable complex number.
+ */
+public final class Complex {
+  public static final Complex ZERO = new Complex(0, 0);
+  public static final Complex ONE  = new Complex(1, 0);
+
+  private final double re;
+  private final double im;
+
+  public Complex(double re, double im)
+  {
+    this.re = re;
+    this.im = im;
+  }
+
+  /**
+   * Returns the number with modulus r and argument theta.
+   * @param r modulus
+   * @param theta argument in radians
+   * @return Complex, r (cos theta + i sin theta)
+   */
+  public static Complex polar(double r, double theta)
+  {
+    return new Complex(r * java.lang.Math.cos(theta),
+                       r * java.lang.Math.sin(theta));
+  }
+
+  public double getRe()
+  {
+    return re;
+  }
+
+  public double getIm()
+  {
+    return im;
+  }
+
+  public Complex add(Complex z)
+  {
+    return new Complex(re + z.re, im + z.im);
+  }
+
+  public Complex subtract(Complex z)
+  {
+    return new Complex(re - z.re, im - z.im);
+  }
+
+  public Complex multiply(Complex z)
+  {
+    return new Complex(re * z.re - im * z.im, re * z.im + im * z.re);
+  }
+
+  public Complex multiply(double k)
+  {
+    return new Complex(k * re, k * im);
+  }
+
+  /**
+   * Divides by z using Smith's algorithm, which avoids the overflow of
+   * computing |z|^2 directly.
+   * @param z the divisor
+   * @return Complex, this/z
+   */
+  public Complex divide(Complex z)
+  {
+    if (java.lang.Math.abs(z.re) >= java.lang.Math.abs(z.im)) {
+      double ratio = z.im / z.re;
+      double denominator = z.re + z.im * ratio;
+      return new Complex((re + im * ratio) / denominator,
+                         (im - re * ratio) / denominator);
+    } else {
+      double ratio = z.re / z.im;
+      double denominator = z.re * ratio + z.im;
+      return new Complex((re * ratio + im) / denominator,
+                         (im * ratio - re) / denominator);
+    }
+  }
+
+  public Complex reciprocal()
+  {
+    return ONE.divide(this);
+  }
+
+  /**
+   * Returns the modulus of the number.
+   * @return double, |z|
+   */
+  public double abs()
+  {
+    return java.lang.Math.hypot(re, im);
+  }
+
+  public Complex conjugate()
+  {
+    return new Complex(re, -im);
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (!(o instanceof Complex))
+      return false;
+
+    Complex z = (Complex)o;
+    return Double.compare(re, z.re) == 0 && Double.compare(im, z.im) == 0;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return Double.hashCode(re) * 31 + Double.hashCode(im);
+  }
+
+  @Override
+  public String toString()
+  {
+    if (im == 0)
+      return re + "";
+    return re + (im < 0 ? " - " : " + ") + java.lang.Math.abs(im) + "i";
+  }
+}
@@ -0,0 +1,453 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Double-double arithmetic: a number is the unevaluated sum hi + lo of two
+ * doubles with |lo| <= ulp(hi)/2, which gives about 32 significant digits
+ * with the exponent range of a double.
+ *
+ * To keep hot loops free of allocations there is no number object, the
+ * operands are passed as pairs of doubles and every operation writes its
+ * result in r[0] (hi) and r[1] (lo) of an array supplied by the caller.
+ * The operations are built on the exact transformations two-sum and
+ * two-product (with fma), following Hida, Li and Bailey's QD library.
+ * Results of the operators are within a few units of 2^-104 relative,
+ * the elementary functions within a few units of 2^-100.
+ */
+public final class DoubleDouble {
+
+  public static final double PI_HI   = 3.141592653589793116e+00;
+  public static final double PI_LO   = 1.224646799147353207e-16;
+  public static final double PIO2_HI = 1.570796326794896558e+00;
+  public static final double PIO2_LO = 6.123233995736766036e-17;
+  // Third part of pi/2 for the argument reduction of sin and cos
+  private static final double PIO2_LO2 = -1.497384904859169833e-33;
+  public static final double LN2_HI  = 6.931471805599452862e-01;
+  public static final double LN2_LO  = 2.319046813846299558e-17;
+  // Third part of ln 2 for the argument reduction of exp
+  private static final double LN2_LO2 = 5.707708438416212066e-34;
+  public static final double LN10_HI = 2.302585092994045901e+00;
+  public static final double LN10_LO = -2.170756223382249351e-16;
+
+  // exp(x) = exp(x/2^EXP_HALVINGS)^(2^EXP_HALVINGS) keeps the series short
+  // Each squaring doubles the relative error, so they are kept few
+  private static final int EXP_HALVINGS = 5;
+  private static final int EXP_TERMS = 13;
+  private static final int EXP_DOUBLE_TERMS = 8;
+  private static final int MAX_FACTORIAL = 170;
+
+  /** 1/n! in double-double, for the series of exp, sin and cos. */
+  private static final int SERIES_TERMS = 30;
+  private static final int TRIG_DOUBLE_TERMS = 8;
+  private static final double[] INVERSE_FACTORIAL_HI = new double[SERIES_TERMS];
+  private static final double[] INVERSE_FACTORIAL_LO = new double[SERIES_TERMS];
+
+  static {
+    MathContext mc = new MathContext(40);
+    BigDecimal f = BigDecimal.ONE;
+
+    for (int n = 0; n < SERIES_TERMS; n++) {
+      if (n > 1)
+        f = f.multiply(BigDecimal.valueOf(n));
+      BigDecimal inverse = BigDecimal.ONE.divide(f, mc);
+      INVERSE_FACTORIAL_HI[n] = inverse.doubleValue();
+      INVERSE_FACTORIAL_LO[n] =
+          inverse.subtract(new BigDecimal(INVERSE_FACTORIAL_HI[n])).doubleValue();
+    }
+  }
+
+
+  private DoubleDouble()
+  {
+  }
+
+  private static void set(double[] r, double hi, double lo)
+  {
+    // quick-two-sum, requires |hi| >= |lo| or hi == 0
+    double s = hi + lo;
+    r[0] = s;
+    r[1] = lo - (s - hi);
+  }
+
+  public static void add(double ah, double al, double bh, double bl,
+                         double[] r)
+  {
+    double s = ah + bh;
+    if (Double.isInfinite(s) || Double.isNaN(s)) {
+      r[0] = s;
+      r[1] = 0;
+      return;
+    }
+
+    double v = s - ah;
+    double e = (ah - (s - v)) + (bh - v);
+
+    double t = al + bl;
+    double w = t - al;
+    double f = (al - (t - w)) + (bl - w);
+
+    e += t;
+    double s2 = s + e;
+    e = e - (s2 - s);
+    e += f;
+    set(r, s2, e);
+  }
+
+  /**
+   * Addition with a single two-sum, it can lose accuracy when a and b
+   * nearly cancel, so it is only used inside the series where they don't.
+   */
+  private static void addSloppy(double ah, double al, double bh, double bl,
+                                double[] r)
+  {
+    double s = ah + bh;
+    double v = s - ah;
+    double e = (ah - (s - v)) + (bh - v);
+
+    set(r, s, e + al + bl);
+  }
+
+  public static void subtract(double ah, double al, double bh, double bl,
+                              double[] r)
+  {
+    add(ah, al, -bh, -bl, r);
+  }
+
+  public static void multiply(double ah, double al, double bh, double bl,
+                              double[] r)
+  {
+    double p = ah * bh;
+    if (Double.isInfinite(p) || Double.isNaN(p) || p == 0) {
+      r[0] = p;
+      r[1] = 0;
+      return;
+    }
+
+    double e = java.lang.Math.fma(ah, bh, -p);
+    e += ah * bl + al * bh;
+    set(r, p, e);
+  }
+
+  public static void divide(double ah, double al, double bh, double bl,
+                            double[] r)
+  {
+    double q1 = ah / bh;
+    if (Double.isInfinite(q1) || Double.isNaN(q1) || q1 == 0) {
+      r[0] = q1;
+      r[1] = 0;
+      return;
+    }
+
+    // a - q1 b, the product is exact up to the low order terms
+    double p = q1 * bh;
+    double e = java.lang.Math.fma(q1, bh, -p) + q1 * bl;
+    double rest = ((ah - p) - e) + al;
+    double q2 = rest / bh;
+
+    set(r, q1, q2);
+  }
+
+  public static void sqrt(double ah, double al, double[] r)
+  {
+    if (ah <= 0) {
+      r[0] = ah == 0 ? 0 : Double.NaN;
+      r[1] = 0;
+      return;
+    }
+
+    double s = java.lang.Math.sqrt(ah);
+    if (Double.isInfinite(s)) {
+      r[0] = s;
+      r[1] = 0;
+      return;
+    }
+
+    // One Newton step, a - s^2 is computed exactly with fma
+    double p = s * s;
+    double e = java.lang.Math.fma(s, s, -p);
+    double correction = ((ah - p) - e + al) / (2 * s);
+    set(r, s, correction);
+  }
+
+  /**
+   * Computes e^a. The argument is reduced to a - k ln 2, divided by
+   * 2^EXP_HALVINGS, the series of e^t - 1 is summed and then squared back
+   * with e^2t - 1 = (e^t - 1)(e^t + 1), which loses no digits near zero.
+   */
+  public static void exp(double ah, double al, double[] r)
+  {
+    if (ah > 709.8) {
+      r[0] = Double.POSITIVE_INFINITY;
+      r[1] = 0;
+      return;
+    }
+    if (ah < -745.2) {
+      r[0] = 0;
+      r[1] = 0;
+      return;
+    }
+    if (Double.isNaN(ah)) {
+      r[0] = Double.NaN;
+      r[1] = 0;
+      return;
+    }
+
+    double k = java.lang.Math.rint(ah / LN2_HI);
+    double p = k * LN2_HI;
+    add(ah, al, -p, -java.lang.Math.fma(k, LN2_HI, -p), r);
+    p = k * LN2_LO;
+    add(r[0], r[1], -p, -java.lang.Math.fma(k, LN2_LO, -p), r);
+    add(r[0], r[1], -k * LN2_LO2, 0, r);
+    double th = java.lang.Math.scalb(r[0], -EXP_HALVINGS);
+    double tl = java.lang.Math.scalb(r[1], -EXP_HALVINGS);
+
+    // e^t - 1 = t (1 + t/2! + t^2/3! + ...), |t| < 2^-6 so that
+    // EXP_TERMS terms are enough. From EXP_DOUBLE_TERMS on the terms are
+    // below 2^-53 relative to the first one and are summed in double.
+    double q = INVERSE_FACTORIAL_HI[EXP_TERMS];
+    for (int n = EXP_TERMS - 1; n >= EXP_DOUBLE_TERMS; n--)
+      q = q * th + INVERSE_FACTORIAL_HI[n];
+
+    double sh = q;
+    double sl = 0;
+    for (int n = EXP_DOUBLE_TERMS - 1; n >= 1; n--) {
+      multiply(sh, sl, th, tl, r);
+      addSloppy(r[0], r[1], INVERSE_FACTORIAL_HI[n], INVERSE_FACTORIAL_LO[n],
+                r);
+      sh = r[0];
+      sl = r[1];
+    }
+    multiply(sh, sl, th, tl, r);
+    sh = r[0];
+    sl = r[1];
+
+    for (int i = 0; i < EXP_HALVINGS; i++) {
+      addSloppy(sh, sl, 2, 0, r);
+      multiply(sh, sl, r[0], r[1], r);
+      sh = r[0];
+      sl = r[1];
+    }
+
+    add(sh, sl, 1, 0, r);
+    int scale = (int)k;
+    r[0] = java.lang.Math.scalb(r[0], scale);
+    r[1] = java.lang.Math.scalb(r[1], scale);
+  }
+
+  /**
+   * Computes ln a with one Newton step from the double logarithm,
+   * y = y + a e^-y - 1, which doubles its 16 correct digits.
+   */
+  public static void log(double ah, double al, double[] r)
+  {
+    if (!(ah > 0) || Double.isInfinite(ah)) {
+      r[0] = ah == 0 ? Double.NEGATIVE_INFINITY : java.lang.Math.log(ah);
+      r[1] = 0;
+      return;
+    }
+
+    if (ah < 0x1p-900) {
+      // e^-y would overflow, ln a = ln(a 2^900) - 900 ln 2
+      log(java.lang.Math.scalb(ah, 900), java.lang.Math.scalb(al, 900), r);
+      double yh = r[0];
+      double yl = r[1];
+      multiply(LN2_HI, LN2_LO, 900, 0, r);
+      subtract(yh, yl, r[0], r[1], r);
+      return;
+    }
+
+    double y = java.lang.Math.log(ah);
+    exp(-y, 0, r);
+    multiply(ah, al, r[0], r[1], r);
+    add(r[0], r[1], -1, 0, r);
+    add(y, 0, r[0], r[1], r);
+  }
+
+  public static void log10(double ah, double al, double[] r)
+  {
+    log(ah, al, r);
+    divide(r[0], r[1], LN10_HI, LN10_LO, r);
+  }
+
+  /**
+   * Computes sin a. The argument is reduced to [-pi/4, pi/4] with pi/2 in
+   * three parts, which keeps full accuracy for |a| up to about 2^20.
+   */
+  public static void sin(double ah, double al, double[] r)
+  {
+    int quadrant = reduce(ah, al, r);
+    series(r[0], r[1], quadrant % 2 == 0, r);
+
+    if (quadrant >= 2) {
+      r[0] = -r[0];
+      r[1] = -r[1];
+    }
+  }
+
+  public static void cos(double ah, double al, double[] r)
+  {
+    int quadrant = reduce(ah, al, r);
+    series(r[0], r[1], quadrant % 2 == 1, r);
+
+    if (quadrant == 1 || quadrant == 2) {
+      r[0] = -r[0];
+      r[1] = -r[1];
+    }
+  }
+
+  public static void tan(double ah, double al, double[] r)
+  {
+    int quadrant = reduce(ah, al, r);
+    double th = r[0];
+    double tl = r[1];
+
+    series(th, tl, true, r);
+    double sh = r[0];
+    double sl = r[1];
+    series(th, tl, false, r);
+
+    // tan is periodic with period pi, odd quadrants are -cos/sin
+    if (quadrant % 2 == 0)
+      divide(sh, sl, r[0], r[1], r);
+    else
+      divide(-r[0], -r[1], sh, sl, r);
+  }
+
+  /**
+   * Writes a - k pi/2 in r and returns k mod 4.
+   */
+  private static int reduce(double ah, double al, double[] r)
+  {
+    double k = java.lang.Math.rint(ah / PIO2_HI);
+
+    // The products by the first two parts are exact
+    double p = k * PIO2_HI;
+    add(ah, al, -p, -java.lang.Math.fma(k, PIO2_HI, -p), r);
+    p = k * PIO2_LO;
+    add(r[0], r[1], -p, -java.lang.Math.fma(k, PIO2_LO, -p), r);
+    add(r[0], r[1], -k * PIO2_LO2, 0, r);
+
+    return (int)(((long)k % 4 + 4) % 4);
+  }
+
+  // sin t = t (1 - t^2/3! + t^4/5! - ...), cos t = 1 - t^2/2! + t^4/4! - ...
+  // summed with Horner's rule in t^2, |t| <= pi/4
+  private static void series(double th, double tl, boolean sine, double[] r)
+  {
+    multiply(th, tl, th, tl, r);
+    double t2h = -r[0];
+    double t2l = -r[1];
+
+    // Terms from t^(2 TRIG_DOUBLE_TERMS) on are below 2^-53 and are summed
+    // in double
+    int n = sine ? SERIES_TERMS - 1 : SERIES_TERMS - 2;
+    int first = 2 * TRIG_DOUBLE_TERMS + (sine ? 1 : 0);
+    double q = INVERSE_FACTORIAL_HI[n];
+    for (n -= 2; n >= first; n -= 2)
+      q = q * t2h + INVERSE_FACTORIAL_HI[n];
+
+    double sh = q;
+    double sl = 0;
+    for (; n >= 0; n -= 2) {
+      multiply(sh, sl, t2h, t2l, r);
+      addSloppy(r[0], r[1], INVERSE_FACTORIAL_HI[n], INVERSE_FACTORIAL_LO[n],
+                r);
+      sh = r[0];
+      sl = r[1];
+    }
+
+    if (sine)
+      multiply(sh, sl, th, tl, r);
+  }
+
+  /**
+   * Computes a^b, by repeated squaring when b is an integer, which allows
+   * negative bases, and as e^(b ln a) otherwise.
+   */
+  public static void pow(double ah, double al, double bh, double bl,
+                         double[] r)
+  {
+    if (bl == 0 && bh == java.lang.Math.rint(bh)
+        && java.lang.Math.abs(bh) < Integer.MAX_VALUE) {
+      integerPower(ah, al, (int)bh, r);
+      return;
+    }
+
+    if (ah == 0) {
+      r[0] = bh > 0 ? 0 : Double.POSITIVE_INFINITY;
+      r[1] = 0;
+      return;
+    }
+
+    log(ah, al, r);
+    multiply(r[0], r[1], bh, bl, r);
+    exp(r[0], r[1], r);
+  }
+
+  private static void integerPower(double ah, double al, int n, double[] r)
+  {
+    double ph = 1;
+    double pl = 0;
+    double bh = ah;
+    double bl = al;
+
+    for (int m = java.lang.Math.abs(n); m > 0; m >>= 1) {
+      if ((m & 1) != 0) {
+        multiply(ph, pl, bh, bl, r);
+        ph = r[0];
+        pl = r[1];
+      }
+      if (m > 1) {
+        multiply(bh, bl, bh, bl, r);
+        bh = r[0];
+        bl = r[1];
+      }
+    }
+
+    if (n < 0)
+      divide(1, 0, ph, pl, r);
+    else {
+      r[0] = ph;
+      r[1] = pl;
+    }
+  }
+
+  /**
+   * Computes n! for the integer part n of a, 1 for negative n like
+   * {@link Math#factorial(int)}, infinity beyond 170!.
+   */
+  public static void factorial(double ah, double[] r)
+  {
+    int n = (int)ah;
+    if (n > MAX_FACTORIAL) {
+      r[0] = Double.POSITIVE_INFINITY;
+      r[1] = 0;
+      return;
+    }
+
+    r[0] = 1;
+    r[1] = 0;
+    for (int i = 2; i <= n; i++)
+      multiply(r[0], r[1], i, 0, r);
+  }
+}
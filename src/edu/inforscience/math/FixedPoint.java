@@ -20,61 +20,60 @@ package edu.inforscience.math;
 
 import edu.inforscience.lang.Function;
 
-import java.util.ArrayList;
-
-public class FixedPoint {
+public class FixedPoint extends AbstractRootFinder {
   public final int MAX_ITERATIONS = 200;
-  private Function function, gx;
+  private Function gx;
 
   public FixedPoint(Function f, Function g)
   {
-    function = f;
+    super(f);
     gx = g;
   }
 
-  public double f(double x)
+  public String getName()
   {
-    return function.evaluate(x);
+    return "Fixed point";
   }
 
   public double g(double x)
   {
+    evaluations++;
     return gx.evaluate(x);
   }
-  
+
   public Solution find(double x0, double epsilon)
-  { 
+  {
     double x1;
     int iterations = 0;
-    
+
     while (iterations < MAX_ITERATIONS) {
       x1 = g(x0);
 
-      if (Math.abs(x1 - x0) < epsilon)
-        return new Solution(x0, x1, x1);
+      if (Math.abs(x1 - x0) < epsilon) {
+        Solution s = new Solution(x0, x1, x1);
+        s.setIterations(iterations + 1);
+        s.setResidual(Math.abs(f(x1)));
+        return s;
+      }
+      if (Double.isNaN(x1) || Double.isInfinite(x1)) {
+        Solution s = new Solution(x0, x1, x1, Solution.DIVERGED);
+        s.setIterations(iterations + 1);
+        return s;
+      }
 
       x0 = x1;
 
       iterations++;
     }
 
-    return null;
+    Solution s = new Solution(x0, x0, x0, Solution.MAX_ITERATIONS);
+    s.setIterations(iterations);
+    return s;
   }
 
-  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
   {
-    BruteForce bruteForce = new BruteForce(function);
-    ArrayList<Solution> possibleIntervals = bruteForce.solve(a, b);
-
-    ArrayList<Solution> roots = new ArrayList<Solution>();
-
-    for (int i = 0; i < possibleIntervals.size(); i++) {
-      Solution sol = possibleIntervals.get(i);
-      roots.add(find(sol.getX() - 0.003, epsilon));
-    }
-
-    return roots;
-
+    return confine(find(bracket.getX() - 0.003, epsilon), bracket);
   }
 }
-
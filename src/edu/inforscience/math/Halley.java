@@ -0,0 +1,83 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+/**
+ * Halley's method, a third order relative of Newton-Raphson:
+ *
+ *   x1 = x0 - 2 f f' / (2 f'^2 - f f'')
+ *
+ * f, f' and f'' are obtained together in one forward-mode pass.
+ */
+public class Halley extends AbstractRootFinder {
+
+  public static final int MAX_ITERATIONS = 200;
+  private double[] jet;
+
+  public Halley(Function f)
+  {
+    super(f);
+    jet = new double[3];
+  }
+
+  public String getName()
+  {
+    return "Halley";
+  }
+
+  public Solution find(double x0, double epsilon)
+  {
+    int iterations = 0;
+    while (iterations < MAX_ITERATIONS) {
+      function.evaluate(x0, jet);
+      evaluations++;
+      double fx = jet[0];
+      if (Math.abs(fx) < epsilon)
+        return solution(x0, Solution.CONVERGED, iterations, fx);
+
+      double slope = jet[1];
+      double curvature = jet[2];
+      double denominator = 2 * slope * slope - fx * curvature;
+      if (Double.isNaN(fx) || Double.isNaN(denominator) || denominator == 0)
+        return solution(x0, Solution.DIVERGED, iterations, fx);
+      x0 = x0 - 2 * fx * slope/denominator;
+
+      iterations++;
+    }
+
+    return solution(x0, Solution.MAX_ITERATIONS, iterations, f(x0));
+  }
+
+  private static Solution solution(double x, int status, int iterations,
+                                   double fx)
+  {
+    Solution s = new Solution(x, x, x, status);
+    s.setIterations(iterations);
+    s.setResidual(Math.abs(fx));
+    return s;
+  }
+
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
+  {
+    return confine(find(bracket.getX(), epsilon), bracket);
+  }
+}
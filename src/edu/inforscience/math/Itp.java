@@ -0,0 +1,156 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+/**
+ * The ITP method (interpolate, truncate, project) of Oliveira and
+ * Takahashi. Every step starts from the regula falsi point, moves it
+ * towards the midpoint by a small truncation, and projects it into an
+ * interval around the midpoint that shrinks just fast enough to never need
+ * more than N0 steps beyond what bisection would. It converges
+ * superlinearly on smooth functions and never worse than bisection.
+ */
+public class Itp extends AbstractRootFinder {
+
+  /** Truncation, delta = K1 (b - a)^K2 with K1 = 0.2/(b - a) at the start. */
+  private static final double K1 = 0.2;
+  private static final double K2 = 2;
+
+  /** Steps allowed beyond those of bisection. */
+  private static final int N0 = 1;
+
+  /** Relative machine precision used in the tolerance on x. */
+  private static final double EPS = java.lang.Math.ulp(1.0);
+
+  private final RootPolisher polisher;
+
+  public Itp(Function f)
+  {
+    super(f);
+    polisher = new RootPolisher(f);
+  }
+
+  public String getName()
+  {
+    return "ITP";
+  }
+
+  /**
+   * Finds a root in [a, b], where f must change sign.
+   * @param a start of the bracket
+   * @param b end of the bracket
+   * @param epsilon error tolerance on |f(x)|, the search also stops when
+   *                the bracket can't be narrowed any more in double
+   * @return Solution, the root, or DIVERGED if f has a discontinuity
+   *         rather than a root in [a, b]
+   */
+  public Solution find(double a, double b, double epsilon)
+  {
+    return find(a, f(a), b, f(b), epsilon);
+  }
+
+  /**
+   * Same as find(a, b, epsilon) with f(a) and f(b) already known.
+   * @param a start of the bracket
+   * @param fa f(a)
+   * @param b end of the bracket
+   * @param fb f(b)
+   * @param epsilon error tolerance on |f(x)|
+   * @return Solution, the root, or DIVERGED if f has a discontinuity
+   *         rather than a root in [a, b]
+   */
+  public Solution find(double a, double fa, double b, double fb,
+                       double epsilon)
+  {
+    double initial = java.lang.Math.min(Math.abs(fa), Math.abs(fb));
+
+    if (Math.abs(fa) < epsilon)
+      return solution(a, b, a, Solution.CONVERGED, 0, fa);
+    if (Math.abs(fb) < epsilon)
+      return solution(a, b, b, Solution.CONVERGED, 0, fb);
+
+    double tolerance = EPS * java.lang.Math.max(Math.abs(a), Math.abs(b));
+    tolerance = java.lang.Math.max(tolerance, Double.MIN_NORMAL);
+    double k1 = K1/(b - a);
+    int maxSteps = (int) java.lang.Math.ceil(
+        java.lang.Math.log((b - a)/(2 * tolerance)) / java.lang.Math.log(2))
+        + N0;
+
+    int iterations = 0;
+    while (b - a > 2 * tolerance) {
+      double middle = (a + b)/2;
+      double radius = java.lang.Math.scalb(tolerance, maxSteps - iterations)
+                      - (b - a)/2;
+      double delta = k1 * java.lang.Math.pow(b - a, K2);
+
+      // Interpolate
+      double x = (fb * a - fa * b)/(fb - fa);
+      // Truncate
+      double sigma = Math.sign(middle - x);
+      x = delta <= Math.abs(middle - x) ? x + sigma * delta : middle;
+      // Project
+      if (Math.abs(x - middle) > radius)
+        x = middle - sigma * radius;
+      if (!(x > a && x < b))
+        x = middle;
+
+      double fx = f(x);
+      iterations++;
+
+      if (Math.abs(fx) < epsilon || fx == 0)
+        return solution(a, b, x, Solution.CONVERGED, iterations, fx);
+
+      if (Math.sign(fx) == Math.sign(fa)) {
+        a = x;
+        fa = fx;
+      } else {
+        b = x;
+        fb = fx;
+      }
+    }
+
+    double x = Math.abs(fa) < Math.abs(fb) ? a : b;
+    double fx = Math.abs(fa) < Math.abs(fb) ? fa : fb;
+    // The bracket collapsed on a jump of f, e.g. a pole
+    int status = Math.abs(fx) > initial ? Solution.DIVERGED
+                                        : Solution.CONVERGED;
+    return solution(a, b, x, status, iterations, fx);
+  }
+
+  private static Solution solution(double a, double b, double x, int status,
+                                   int iterations, double fx)
+  {
+    Solution s = new Solution(a, b, x, status);
+    s.setIterations(iterations);
+    s.setResidual(Math.abs(fx));
+    return s;
+  }
+
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
+  {
+    Solution s = find(bracket.getA(), fa(bracket), bracket.getB(), fb(bracket),
+                      epsilon);
+    if (s.hasRoot())
+      evaluations += polisher.polish(s);
+    return s;
+  }
+}
@@ -20,13 +20,75 @@ package edu.inforscience.math;
 
 /**
  * My Extended Math class.
+ *
+ * Besides the series of the textbook and the delegates to java.lang.Math,
+ * this class has a fast tier of sin, cos, exp and log kernels used when
+ * plotting. They reduce the argument to a small range and evaluate a
+ * polynomial there, their maximum errors, measured against StrictMath on
+ * random arguments, are given with each one.
  */
 public class Math {
 
   public static double PI   = java.lang.Math.PI;
   public static double E    = java.lang.Math.E;
 
+  // pi/2 split in three parts of 33 bits and a tail, k * PIO2_1, k * PIO2_2
+  // and k * PIO2_3 are exact for |k| < 2^20 (Cody-Waite reduction, constants
+  // from fdlibm)
+  private static final double PIO2_1  = 1.57079632673412561417e+00;
+  private static final double PIO2_2  = 6.07710050630396597660e-11;
+  private static final double PIO2_3  = 2.02226624871116645580e-21;
+  private static final double PIO2_3T = 8.47842766036889956997e-32;
+  private static final double INV_PIO2 = 6.36619772367581382433e-01;
+  private static final double MAX_REDUCIBLE = 823549.0;
 
+  // Minimax coefficients of sin and cos on [-pi/4, pi/4], from fdlibm
+  private static final double S1 = -1.66666666666666324348e-01;
+  private static final double S2 =  8.33333333332248946124e-03;
+  private static final double S3 = -1.98412698298579493134e-04;
+  private static final double S4 =  2.75573137070700676789e-06;
+  private static final double S5 = -2.50507602534068634195e-08;
+  private static final double S6 =  1.58969099521155010221e-10;
+
+  private static final double C1 =  4.16666666666666019037e-02;
+  private static final double C2 = -1.38888888888741095749e-03;
+  private static final double C3 =  2.48015872894767294178e-05;
+  private static final double C4 = -2.75573143513906633035e-07;
+  private static final double C5 =  2.08757232129817482790e-09;
+  private static final double C6 = -1.13596475577881948265e-11;
+
+  // ln 2 split so that k * LN2_HI is exact for |k| < 2^20
+  private static final double LN2_HI = 6.93147180369123816490e-01;
+  private static final double LN2_LO = 1.90821492927058770002e-10;
+  private static final double INV_LN2 = 1.44269504088896338700e+00;
+  private static final double INV_LN10 = 0.43429448190325182765;
+
+  /** 2^(j/32) for j = 0..31. */
+  private static final double[] EXP_TABLE = new double[32];
+
+  /**
+   * Reciprocals of the centers 1 + i/128 for i = -38..53, offset by
+   * LOG_OFFSET, and minus their logarithms.
+   */
+  private static final double[] LOG_INVERSE = new double[92];
+  private static final double[] LOG_CENTER  = new double[92];
+  private static final int LOG_OFFSET = 38;
+
+  static {
+    for (int j = 0; j < EXP_TABLE.length; j++)
+      EXP_TABLE[j] = StrictMath.pow(2, j / 32.0);
+
+    for (int i = 0; i < LOG_INVERSE.length; i++) {
+      double inverse = 1 / (1 + (i - LOG_OFFSET) / 128.0);
+      LOG_INVERSE[i] = inverse;
+      LOG_CENTER[i] = -StrictMath.log(inverse);
+    }
+  }
+
+
+  /**
+   * Returns n!, exact up to 20!, larger values overflow a long.
+   */
   public static long factorial(int n)
   {
     long f = 1;
@@ -35,15 +97,27 @@ public class Math {
     return f;
   }
 
+  /**
+   * Reduces x to [-pi, pi] keeping its sine and cosine, the series below
+   * converge much faster there.
+   */
+  private static double reduce(double x)
+  {
+    return x - 2 * PI * java.lang.Math.rint(x / (2 * PI));
+  }
+
   // cos(x) = x^0/0! - x^2/2! + x^4/4! - x^6/6! + ...
+  // Each term is obtained from the previous one, x is reduced first.
   public static double cos(double x, int iterations)
   {
-    double sum = 0, sign = 1;
+    x = reduce(x);
+
+    double sum = 0, term = 1;
     int n = 0;
 
     for (int i = 0; i <= iterations; i++) {
-      sum += sign * java.lang.Math.pow(x, n)/factorial(n);
-      sign *= -1;
+      sum += term;
+      term *= -x * x / ((n + 1.0) * (n + 2));
       n += 2;
     }
 
@@ -53,26 +127,167 @@ public class Math {
   // sin(x) = x^1/1! - x^3/3! + x^5/5! - x^7/7! + ...
   public static double sin(double x, int iterations)
   {
-    double sign = 1, sum = 0;
+    x = reduce(x);
+
+    double sum = 0, term = x;
     int n = 1;
     for (int i = 0; i < iterations; i++) {
-      sum += sign * java.lang.Math.pow(x, n)/factorial(n);
+      sum += term;
+      term *= -x * x / ((n + 1.0) * (n + 2));
       n += 2;
-      sign *= -1;
     }
 
     return sum;
   }
 
+  // e = 1/0! + 1/1! + 1/2! + ...
   public static double e(int iterations)
   {
-    double euler = 0;
-    for (int n = 0; n < iterations; n++)
-      euler += 1.0/factorial(n);
+    double euler = 0, term = 1;
+    for (int n = 0; n < iterations; n++) {
+      euler += term;
+      term /= n + 1;
+    }
 
     return euler;
   }
 
+  /**
+   * Fast sine, within 2 ulp for |x| <= 823549, larger arguments are passed
+   * to java.lang.Math.sin.
+   * @param x angle in radians
+   * @return double, sin(x)
+   */
+  public static double fastSin(double x)
+  {
+    if (!(abs(x) <= MAX_REDUCIBLE))
+      return java.lang.Math.sin(x);
+    if (abs(x) < 0x1p-27)
+      return x;
+
+    double k = java.lang.Math.rint(x * INV_PIO2);
+    double r = remainderPio2(x, k);
+
+    switch ((int)k & 3) {
+      case 0:  return sinKernel(r);
+      case 1:  return cosKernel(r);
+      case 2:  return -sinKernel(r);
+      default: return -cosKernel(r);
+    }
+  }
+
+  /**
+   * Fast cosine, within 2 ulp for |x| <= 823549, larger arguments are passed
+   * to java.lang.Math.cos.
+   * @param x angle in radians
+   * @return double, cos(x)
+   */
+  public static double fastCos(double x)
+  {
+    if (!(abs(x) <= MAX_REDUCIBLE))
+      return java.lang.Math.cos(x);
+
+    double k = java.lang.Math.rint(x * INV_PIO2);
+    double r = remainderPio2(x, k);
+
+    switch ((int)k & 3) {
+      case 0:  return cosKernel(r);
+      case 1:  return -sinKernel(r);
+      case 2:  return -cosKernel(r);
+      default: return sinKernel(r);
+    }
+  }
+
+  /**
+   * Returns x - k pi/2. Near a multiple of pi/2 the first three terms cancel
+   * and the result is as small as k * PIO2_3, then the tail of pi/2 is
+   * needed too; subtracting it always costs less than testing for it.
+   */
+  private static double remainderPio2(double x, double k)
+  {
+    return (((x - k * PIO2_1) - k * PIO2_2) - k * PIO2_3) - k * PIO2_3T;
+  }
+
+  private static double sinKernel(double x)
+  {
+    double z = x * x, w = z * z;
+    double r = S2 + z * (S3 + z * S4) + z * w * (S5 + z * S6);
+    return x + z * x * (S1 + z * r);
+  }
+
+  private static double cosKernel(double x)
+  {
+    double z = x * x, w = z * z;
+    double r = z * (C1 + z * (C2 + z * C3)) + w * w * (C4 + z * (C5 + z * C6));
+    double hz = 0.5 * z;
+    w = 1 - hz;
+    return w + (((1 - w) - hz) + z * r);
+  }
+
+  /**
+   * Fast exponential, within 1 ulp for |x| <= 708, other arguments are
+   * passed to java.lang.Math.exp. x is reduced to k ln2/32 + r with
+   * |r| <= ln2/64, then e^x = 2^(k/32) e^r with 2^(k/32) taken from a table
+   * and e^r from its Taylor polynomial of degree 6.
+   * @param x the exponent
+   * @return double, e^x
+   */
+  public static double fastExp(double x)
+  {
+    if (!(abs(x) <= 708))
+      return java.lang.Math.exp(x);
+
+    double k = java.lang.Math.rint(x * 32 * INV_LN2);
+    double r = (x - k * (LN2_HI / 32)) - k * (LN2_LO / 32);
+    int n = (int)k;
+
+    double p = r + r * r * (1.0 / 2 + r * (1.0 / 6 + r * (1.0 / 24 +
+               r * (1.0 / 120 + r * (1.0 / 720)))));
+    double t = EXP_TABLE[n & 31];
+    return (t + t * p) * Double.longBitsToDouble((1023L + (n >> 5)) << 52);
+  }
+
+  /**
+   * Fast natural logarithm, within 2 ulp for positive normal x, other
+   * arguments are passed to java.lang.Math.log. x = 2^k m with m near a
+   * center c = 1 + i/128, then log x = k ln2 + log c + log(1 + r) with
+   * r = m/c - 1 computed in one fused multiply-add and log(1 + r) from its
+   * Taylor polynomial of degree 7.
+   * @param x a positive number
+   * @return double, ln(x)
+   */
+  public static double fastLog(double x)
+  {
+    if (!(x >= Double.MIN_NORMAL && x <= Double.MAX_VALUE))
+      return java.lang.Math.log(x);
+
+    long bits = Double.doubleToRawLongBits(x);
+    int k = (int)(bits >>> 52) - 1023;
+    double m = Double.longBitsToDouble((bits & 0x000fffffffffffffL) |
+                                       0x3ff0000000000000L);
+    if (m > 1.4142135623730951) {
+      m *= 0.5;
+      k++;
+    }
+
+    int i = (int)java.lang.Math.rint((m - 1) * 128) + LOG_OFFSET;
+    double r = java.lang.Math.fma(m, LOG_INVERSE[i], -1);
+    double p = r - r * r * (1.0 / 2 - r * (1.0 / 3 - r * (1.0 / 4 -
+               r * (1.0 / 5 - r * (1.0 / 6 - r * (1.0 / 7))))));
+
+    return (k * LN2_HI + LOG_CENTER[i]) + (p + k * LN2_LO);
+  }
+
+  /**
+   * Fast decimal logarithm, within 3 ulp, see fastLog().
+   * @param x a positive number
+   * @return double, log10(x)
+   */
+  public static double fastLog10(double x)
+  {
+    return fastLog(x) * INV_LN10;
+  }
+
   public static double sin(double theta)
   {
     return java.lang.Math.sin(theta);
@@ -0,0 +1,93 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Keeps how root finders performed on earlier problems, runs, converged
+ * roots, time and evaluations per method, so the user can compare them
+ * when picking one. It doesn't pick: "best suited" is Brent's method.
+ */
+public class MethodSelector {
+
+  private final HashMap<String, Statistics> statistics;
+
+  public MethodSelector()
+  {
+    statistics = new HashMap<String, Statistics>();
+  }
+
+  /**
+   * Records a run of a method.
+   * @param finder the method, after solve()
+   * @param solutions what solve() returned
+   * @param nanos wall time of solve()
+   */
+  public synchronized void record(RootFinder finder, List<Solution> solutions,
+                                  long nanos)
+  {
+    Statistics s = statistics(finder.getName());
+    s.runs++;
+    s.nanos += nanos;
+    s.evaluations += finder.getEvaluations();
+    s.roots += solutions.size();
+    for (Solution solution : solutions)
+      if (solution.getStatus() == Solution.CONVERGED)
+        s.converged++;
+  }
+
+  /**
+   * Returns a one line summary of the runs of a method.
+   * @param name as returned by RootFinder.getName()
+   * @return String, runs, converged roots and mean cost per root
+   */
+  public synchronized String report(String name)
+  {
+    Statistics s = statistics(name);
+    double perRoot = s.converged == 0 ? 0 : s.nanos / 1e6 / s.converged;
+    double evaluationsPerRoot =
+        s.converged == 0 ? 0 : (double) s.evaluations / s.converged;
+
+    return String.format("%s: %d runs, %d/%d roots converged, "
+                         + "%.3f ms and %.1f evaluations per root",
+                         name, s.runs, s.converged, s.roots, perRoot,
+                         evaluationsPerRoot);
+  }
+
+  private Statistics statistics(String name)
+  {
+    Statistics s = statistics.get(name);
+    if (s == null) {
+      s = new Statistics();
+      statistics.put(name, s);
+    }
+
+    return s;
+  }
+
+  private static class Statistics {
+    int runs;
+    long roots;
+    long converged;
+    long nanos;
+    long evaluations;
+  }
+}
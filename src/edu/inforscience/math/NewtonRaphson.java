@@ -18,59 +18,134 @@
 */
 package edu.inforscience.math;
 import edu.inforscience.lang.Function;
-import java.util.ArrayList;
 
-public class NewtonRaphson {
+public class NewtonRaphson extends AbstractRootFinder {
 
   public static final int MAX_ITERATIONS = 200;
-  private Function function;
+  // Iterations without halving the residual before escalating precision
+  public static final int STALL_LIMIT = 3;
+  private Function derivative;
+  private double[] jet;
+  private final RootPolisher polisher;
 
   public NewtonRaphson(Function f)
   {
-    function = f;
+    super(f);
+    derivative = f.getDerivative();
+    jet = new double[2];
+    polisher = new RootPolisher(f);
   }
 
-  public double f(double x)
+  public String getName()
   {
-    return function.evaluate(x);
+    return "Newton-Raphson";
+  }
+
+  /**
+   * Evaluates f(x) and f'(x). The compiled symbolic derivative is used when
+   * available, otherwise both values come from a single forward-mode pass.
+   * @param x the point
+   * @param values receives f(x) in values[0] and f'(x) in values[1]
+   */
+  public void evaluate(double x, double[] values)
+  {
+    if (derivative != null) {
+      values[0] = f(x);
+      values[1] = derivative.evaluate(x);
+    } else {
+      evaluations++;
+      function.evaluate(x, values);
+    }
   }
 
 
+  /**
+   * Newton's iteration from x0. When the residual stops decreasing at the
+   * rounding noise of f before reaching epsilon, or epsilon is below
+   * PrecisionEscalation.NOISE_FLOOR and the double residual can't be
+   * trusted, the last iterations are done with BigDecimal arithmetic, see
+   * {@link PrecisionEscalation}.
+   * @param x0 starting point
+   * @param epsilon error tolerance
+   * @return Solution, the root or the last iterate if the iteration did not
+   *         converge
+   */
   public Solution find(double x0, double epsilon)
   {
+    double best = Double.POSITIVE_INFINITY;
+    int stalls = 0;
     int iterations = 0;
     while (iterations < MAX_ITERATIONS) {
-      double fx = f(x0);
+      evaluate(x0, jet);
+      double fx = jet[0];
+      if (Double.isNaN(x0) || Double.isInfinite(x0) ||
+          Double.isNaN(fx) || Double.isInfinite(fx))
+        return solution(x0, Solution.DIVERGED, iterations, fx);
+
       if (Math.abs(fx) < epsilon) {
-        return new Solution(x0, x0, x0);
+        if (epsilon >= PrecisionEscalation.NOISE_FLOOR)
+          return solution(x0, Solution.CONVERGED, iterations, fx);
+
+        evaluations++;
+        if (PrecisionEscalation.confirm(function, x0, epsilon))
+          return solution(x0, Solution.CONVERGED, iterations, fx);
+        return escalate(x0, epsilon, iterations, fx);
       } else {
-        // Slope or derivative of f(x) computed numerically
-        double slope = (f(x0 + 1e-9) - f(x0))/1e-9;
-        x0 = x0 - f(x0)/slope;
+        if (Math.abs(fx) >= best / 2)
+          stalls++;
+        else
+          stalls = 0;
+        best = java.lang.Math.min(best, Math.abs(fx));
+
+        double slope = jet[1];
+        if (stalls >= STALL_LIMIT &&
+            PrecisionEscalation.isWorthRefining(fx, x0, slope, epsilon))
+          return escalate(x0, epsilon, iterations, fx);
+
+        if (Double.isNaN(slope) || slope == 0)
+          return solution(x0, Solution.DIVERGED, iterations, fx);
+        x0 = x0 - fx/slope;
       }
 
+      iterations++;
     }
 
-    return null;
+    return solution(x0, Solution.MAX_ITERATIONS, iterations, f(x0));
   }
 
-  /**
-   * Finds a real solution(if any) of f(x) with x0 as starting point.
-   * @param epsilon error tolerance
-   */
-  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  private Solution escalate(double x0, double epsilon, int iterations,
+                            double fx)
   {
-    BruteForce bruteForce = new BruteForce(function);
-    ArrayList<Solution> possibleIntervals = bruteForce.solve(a, b);
-
-    ArrayList<Solution> roots = new ArrayList<Solution>();
+    PrecisionEscalation escalation =
+        new PrecisionEscalation(function, derivative);
+    double x = escalation.refine(x0, x0, epsilon);
+    evaluations += escalation.getEvaluations();
+
+    if (Double.isNaN(x))
+      return solution(x0, Solution.DIVERGED, iterations, fx);
+    return solution(x, Solution.CONVERGED, iterations,
+                    escalation.getResidual());
+  }
 
-    for (int i = 0; i < possibleIntervals.size(); i++) {
-      Solution sol = possibleIntervals.get(i);
-      roots.add(find(sol.getX(), epsilon));
-    }
+  private static Solution solution(double x, int status, int iterations,
+                                   double fx)
+  {
+    Solution s = new Solution(x, x, x, status);
+    s.setIterations(iterations);
+    s.setResidual(Math.abs(fx));
+    return s;
+  }
 
-    return roots;
+  /**
+   * Refines a bracket starting from its midpoint, a root outside of it is
+   * DIVERGED.
+   */
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
+  {
+    Solution s = confine(find(bracket.getX(), epsilon), bracket);
+    if (s.hasRoot())
+      evaluations += polisher.polish(s);
+    return s;
   }
 }
-
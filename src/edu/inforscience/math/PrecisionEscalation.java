@@ -0,0 +1,214 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Last iterations of the solvers in BigDecimal arithmetic. Near an
+ * ill-conditioned root the double value of f is mostly rounding noise and
+ * the iteration stalls, here it goes on with 34 digits, doubling them every
+ * time the steps stop shrinking, until the residual is below epsilon or the
+ * root is known to double precision.
+ */
+class PrecisionEscalation {
+
+  public static final int START_PRECISION = 34;
+
+  /**
+   * Residual tolerances below this are beyond what f evaluated in double
+   * can tell for terms of order 1, a residual that small has to be
+   * confirmed, see confirm().
+   */
+  public static final double NOISE_FLOOR = 0x1p-52;
+
+  /** Ulps of rounding error f may pile up before a stall is noise. */
+  public static final double NOISE_ULPS = 1024;
+  public static final int MAX_PRECISION = 272;
+  private static final int MAX_STEPS = 100;
+  private static final int STALL_LIMIT = 2;
+
+  private final Function function;
+  private final Function derivative;
+  private long evaluations;
+  private double residual;
+
+  /**
+   * @param function f
+   * @param derivative f', null to take secant steps instead of Newton steps
+   */
+  public PrecisionEscalation(Function function, Function derivative)
+  {
+    this.function = function;
+    this.derivative = derivative;
+    residual = Double.NaN;
+  }
+
+  /**
+   * @return long, the evaluations of f and f' made by refine()
+   */
+  public long getEvaluations()
+  {
+    return evaluations;
+  }
+
+  /**
+   * @return double, |f(x)| at the last point refine() evaluated
+   */
+  public double getResidual()
+  {
+    return residual;
+  }
+
+  /**
+   * Tells if refining a stalled iteration is worth it: the residual is
+   * rounding noise, f evaluated in double can't get any closer to zero
+   * near x, and a root written with twice the digits of a double, like
+   * polished roots are, can still meet epsilon. A stall far above the
+   * noise comes from an iteration that diverges or oscillates. The scale
+   * of the terms of f is estimated from |x f'(x)|; |f'(x)| is taken as at
+   * least 1, a secant through noise may be flat.
+   * @param fx f(x)
+   * @param x the point
+   * @param slope f'(x) or an estimate of it
+   * @param epsilon error tolerance on |f(x)|
+   * @return boolean, true if |fx| is within NOISE_ULPS of the noise and
+   *         2^-53 ulps of x move f by less than epsilon
+   */
+  public static boolean isWorthRefining(double fx, double x, double slope,
+                                        double epsilon)
+  {
+    double scale = java.lang.Math.max(1, Math.abs(x * slope));
+    return Math.abs(fx) <= NOISE_ULPS * NOISE_FLOOR * scale &&
+           java.lang.Math.max(1, Math.abs(slope)) * java.lang.Math.ulp(x) *
+           0x1p-53 < epsilon;
+  }
+
+  /**
+   * Tells if |f(x)| < epsilon holds when f is evaluated with
+   * START_PRECISION digits. In double a residual of 0 may come from
+   * cancellation far from the root.
+   * @param function f
+   * @param x the point
+   * @param epsilon error tolerance on |f(x)|
+   * @return boolean, true if the residual is confirmed, false if x isn't
+   *         finite
+   */
+  public static boolean confirm(Function function, double x, double epsilon)
+  {
+    if (Double.isNaN(x) || Double.isInfinite(x))
+      return false;
+
+    BigDecimal fx = function.evaluate(new BigDecimal(x),
+                                      new MathContext(START_PRECISION));
+    return fx != null && fx.abs().compareTo(new BigDecimal(epsilon)) < 0;
+  }
+
+  /**
+   * Refines an approximation of a root.
+   * @param x0 previous approximation, only used for secant steps
+   * @param x1 current approximation
+   * @param epsilon error tolerance on |f(x)|
+   * @return double, the root or NaN if the iteration failed even with
+   *         MAX_PRECISION digits or x0 or x1 isn't finite
+   */
+  public double refine(double x0, double x1, double epsilon)
+  {
+    residual = Double.NaN;
+    if (Double.isNaN(x0) || Double.isInfinite(x0) ||
+        Double.isNaN(x1) || Double.isInfinite(x1))
+      return Double.NaN;
+
+    BigDecimal tolerance = new BigDecimal(epsilon);
+    BigDecimal previous = new BigDecimal(x0);
+    BigDecimal x = new BigDecimal(x1);
+    BigDecimal fPrevious = null;
+
+    for (int digits = START_PRECISION; digits <= MAX_PRECISION; digits *= 2) {
+      MathContext mc = new MathContext(digits);
+      BigDecimal lastStep = null;
+      int stalls = 0;
+
+      if (derivative == null) {
+        // A secant needs two distinct points
+        if (previous.compareTo(x) == 0)
+          previous = x.add(new BigDecimal(java.lang.Math.ulp(x.doubleValue())));
+        fPrevious = function.evaluate(previous, mc);
+        evaluations++;
+      }
+
+      for (int i = 0; i < MAX_STEPS && stalls < STALL_LIMIT; i++) {
+        BigDecimal fx = function.evaluate(x, mc);
+        evaluations++;
+        if (fx == null)
+          return Double.NaN;
+        residual = fx.abs().doubleValue();
+        if (fx.abs().compareTo(tolerance) < 0)
+          return x.doubleValue();
+
+        BigDecimal step = step(previous, fPrevious, x, fx, mc);
+        if (step == null)
+          break;
+
+        previous = x;
+        fPrevious = fx;
+        x = x.subtract(step, mc);
+
+        // Below half an ulp the double result cannot change any more
+        double root = x.doubleValue();
+        if (step.abs().doubleValue() <= java.lang.Math.ulp(root) / 2)
+          return root;
+
+        // Steps that don't shrink are rounding noise
+        if (lastStep != null && step.abs().compareTo(lastStep.abs()) >= 0)
+          stalls++;
+        else
+          stalls = 0;
+        lastStep = step;
+      }
+    }
+
+    return Double.NaN;
+  }
+
+  /**
+   * Returns the Newton or secant correction, null if it is undefined.
+   */
+  private BigDecimal step(BigDecimal previous, BigDecimal fPrevious,
+                          BigDecimal x, BigDecimal fx, MathContext mc)
+  {
+    BigDecimal slope;
+
+    if (derivative != null) {
+      slope = derivative.evaluate(x, mc);
+      evaluations++;
+    } else {
+      if (fPrevious == null || x.compareTo(previous) == 0)
+        return null;
+      slope = fx.subtract(fPrevious, mc).divide(x.subtract(previous, mc), mc);
+    }
+
+    if (slope == null || slope.signum() == 0)
+      return null;
+    return fx.divide(slope, mc);
+  }
+}
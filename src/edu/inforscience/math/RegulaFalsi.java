@@ -0,0 +1,154 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+/**
+ * Regula falsi with the Illinois or the Anderson-Bj&ouml;rck modification.
+ * Plain regula falsi keeps one end of the bracket fixed on convex functions
+ * and converges slowly; both modifications scale down f at the end that
+ * was kept, by 1/2 (Illinois) or by 1 - f(c)/f(b) (Anderson-Bj&ouml;rck),
+ * which pulls the next point towards it. Each step costs one evaluation,
+ * the values at the ends of the bracket are carried forward.
+ */
+public class RegulaFalsi extends AbstractRootFinder {
+
+  public static final int ILLINOIS        = 0;
+  public static final int ANDERSON_BJORCK = 1;
+
+  public static final int MAX_ITERATIONS = 200;
+
+  /** Relative machine precision used in the tolerance on x. */
+  private static final double EPS = java.lang.Math.ulp(1.0);
+
+  private final int modification;
+  private final RootPolisher polisher;
+
+  /**
+   * @param f the function
+   * @param modification ILLINOIS or ANDERSON_BJORCK
+   */
+  public RegulaFalsi(Function f, int modification)
+  {
+    super(f);
+    this.modification = modification;
+    polisher = new RootPolisher(f);
+  }
+
+  public String getName()
+  {
+    return modification == ILLINOIS ? "Illinois" : "Anderson-Bj\u00f6rck";
+  }
+
+  /**
+   * Finds a root in [a, b], where f must change sign.
+   * @param a start of the bracket
+   * @param b end of the bracket
+   * @param epsilon error tolerance on |f(x)|, the search also stops when
+   *                the bracket can't be narrowed any more in double
+   * @return Solution, the root; DIVERGED if f has a discontinuity rather
+   *         than a root in [a, b], MAX_ITERATIONS if it took too long
+   */
+  public Solution find(double a, double b, double epsilon)
+  {
+    return find(a, f(a), b, f(b), epsilon);
+  }
+
+  /**
+   * Same as find(a, b, epsilon) with f(a) and f(b) already known.
+   * @param a start of the bracket
+   * @param fa f(a)
+   * @param b end of the bracket
+   * @param fb f(b)
+   * @param epsilon error tolerance on |f(x)|
+   * @return Solution, the root; DIVERGED if f has a discontinuity rather
+   *         than a root in [a, b], MAX_ITERATIONS if it took too long
+   */
+  public Solution find(double a, double fa, double b, double fb,
+                       double epsilon)
+  {
+    double initial = java.lang.Math.min(Math.abs(fa), Math.abs(fb));
+
+    if (Math.abs(fa) < epsilon)
+      return solution(a, b, a, Solution.CONVERGED, 0, fa);
+    if (Math.abs(fb) < epsilon)
+      return solution(a, b, b, Solution.CONVERGED, 0, fb);
+
+    // b is always the last point, the root lies between a and b
+    for (int iterations = 1; iterations <= MAX_ITERATIONS; iterations++) {
+      double low = java.lang.Math.min(a, b), high = java.lang.Math.max(a, b);
+      if (high - low <= 2 * EPS * java.lang.Math.max(Math.abs(low),
+                                                     Math.abs(high))) {
+        // The bracket collapsed on a jump of f, e.g. a pole
+        int status = Math.abs(fb) > initial ? Solution.DIVERGED
+                                            : Solution.CONVERGED;
+        return solution(low, high, b, status, iterations, fb);
+      }
+
+      double c = b - fb * (b - a)/(fb - fa);
+      // Rounding can throw c out of the bracket, fall back to bisection
+      if (!(c > low && c < high))
+        c = (low + high)/2;
+
+      double fc = f(c);
+      if (Math.abs(fc) < epsilon || fc == 0)
+        return solution(low, high, c, Solution.CONVERGED, iterations, fc);
+
+      if (Math.sign(fc) == Math.sign(fb)) {
+        // a is kept again, shrink its value
+        double m = 0.5;
+        if (modification == ANDERSON_BJORCK) {
+          m = 1 - fc/fb;
+          if (m <= 0)
+            m = 0.5;
+        }
+        fa *= m;
+      } else {
+        a = b;
+        fa = fb;
+      }
+
+      b = c;
+      fb = fc;
+    }
+
+    return solution(java.lang.Math.min(a, b), java.lang.Math.max(a, b), b,
+                    Solution.MAX_ITERATIONS, MAX_ITERATIONS, fb);
+  }
+
+  private static Solution solution(double a, double b, double x, int status,
+                                   int iterations, double fx)
+  {
+    Solution s = new Solution(a, b, x, status);
+    s.setIterations(iterations);
+    s.setResidual(Math.abs(fx));
+    return s;
+  }
+
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
+  {
+    Solution s = find(bracket.getA(), fa(bracket), bracket.getB(), fb(bracket),
+                      epsilon);
+    if (s.hasRoot())
+      evaluations += polisher.polish(s);
+    return s;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import java.util.ArrayList;
+
+/**
+ * A method that finds the real roots of a function in an interval. Every
+ * root found, or looked for and not found, is one Solution in the result,
+ * its status tells which; results are never null and never contain null.
+ * Solutions also carry what they cost, so the cost of methods on real
+ * inputs can be reported, see {@link MethodSelector}.
+ */
+public interface RootFinder {
+
+  /**
+   * Finds the roots of the function in [a, b].
+   * @param a start of the interval
+   * @param b end of the interval
+   * @param epsilon error tolerance, its meaning depends on the method
+   * @return ArrayList&lt;Solution&gt;, one solution per root looked for
+   */
+  ArrayList<Solution> solve(double a, double b, double epsilon);
+
+  /**
+   * Returns the number of evaluations of f made by the last call to
+   * solve(), including the ones spent looking for brackets.
+   * @return long, evaluations of f
+   */
+  long getEvaluations();
+
+  /**
+   * Returns the name of the method, e.g. "Bisection".
+   * @return String, a short human readable name
+   */
+  String getName();
+}
@@ -0,0 +1,95 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.DoubleDoubleEvaluator;
+import edu.inforscience.lang.Function;
+
+/**
+ * Polishes the roots found by the solvers with a few Newton steps in which
+ * f is evaluated in double-double arithmetic. The slope only needs to be
+ * roughly right, so it is evaluated in double; each step multiplies the
+ * error by about 2^-53 and leaves the root correctly rounded in x, with the
+ * next 16 digits in xLow.
+ */
+class RootPolisher {
+
+  private static final int MAX_STEPS = 3;
+
+  private final Function function;
+  private final DoubleDoubleEvaluator evaluator;
+  private final double[] value;
+  private final double[] step;
+  private final double[] jet;
+
+  public RootPolisher(Function f)
+  {
+    function = f;
+    evaluator = f.getExpression() == null ? null
+        : new DoubleDoubleEvaluator(f.getExpression().getProgram());
+    value = new double[2];
+    step = new double[2];
+    jet = new double[2];
+  }
+
+  /**
+   * Polishes s in place, updating its residual. Steps that don't reduce |f|
+   * are rejected, which happens at multiple roots where the slope vanishes.
+   * @param s a solution
+   * @return int, the number of evaluations of f made
+   */
+  public int polish(Solution s)
+  {
+    if (evaluator == null)
+      return 0;
+
+    double hi = s.getX();
+    double lo = 0;
+    evaluator.evaluate(hi, lo, value);
+    int evaluations = 1;
+
+    for (int i = 0; i < MAX_STEPS && value[0] != 0; i++) {
+      double residual = Math.abs(value[0]);
+
+      function.evaluate(hi, jet);
+      evaluations++;
+      double slope = jet[1];
+      if (Double.isNaN(residual) || Double.isNaN(slope) || slope == 0)
+        break;
+
+      DoubleDouble.divide(value[0], value[1], slope, 0, step);
+      DoubleDouble.subtract(hi, lo, step[0], step[1], step);
+      evaluator.evaluate(step[0], step[1], value);
+      evaluations++;
+      if (!(Math.abs(value[0]) < residual)) {
+        value[0] = residual;
+        break;
+      }
+
+      hi = step[0];
+      lo = step[1];
+    }
+
+    s.setX(hi);
+    s.setXLow(lo);
+    if (!Double.isNaN(value[0]))
+      s.setResidual(Math.abs(value[0]));
+    return evaluations;
+  }
+}
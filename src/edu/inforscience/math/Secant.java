@@ -20,55 +20,111 @@ package edu.inforscience.math;
 
 import edu.inforscience.lang.Function;
 
-import java.util.ArrayList;
+public class Secant extends AbstractRootFinder {
 
-public class Secant {
-
-  private Function function;
   private static final int MAX_ITERATIONS = 200;
+  // Iterations without halving the residual before escalating precision
+  private static final int STALL_LIMIT = 3;
+  private final RootPolisher polisher;
 
   public Secant(Function f)
   {
-    function = f;
+    super(f);
+    polisher = new RootPolisher(f);
   }
 
-  public double f(double x)
+  public String getName()
   {
-    return function.evaluate(x);
+    return "Secant";
   }
 
+  /**
+   * Secant iteration from x0 and x1. When the residual stops decreasing at
+   * the rounding noise of f before reaching epsilon the last iterations are
+   * done with BigDecimal arithmetic, see {@link PrecisionEscalation}.
+   * f(x0) is carried from one step to the next, every step costs a single
+   * evaluation.
+   * @param x0 first point
+   * @param x1 second point
+   * @param epsilon error tolerance
+   * @return Solution, the root or the last iterate if the iteration did not
+   *         converge
+   */
   public Solution find(double x0, double x1, double epsilon)
   {
+    double best = Double.POSITIVE_INFINITY;
+    int stalls = 0;
     int iterations = 0;
+    double f0 = f(x0);
+    double lastSlope = Double.NaN;
     while (iterations < MAX_ITERATIONS) {
       double fx = f(x1);
-
-      if (Math.abs(fx) < epsilon)
-        return new Solution(x0, x1, x1);
-
-      double temp = x1;
-      x1 = x1 - (x1 - x0)/(f(x1) - f(x0)) * f(x1);
-      x0 = temp;
+      // A flat secant sends x1 to infinity, where f may still look small
+      if (Double.isNaN(x1) || Double.isInfinite(x1) ||
+          Double.isNaN(fx) || Double.isInfinite(fx))
+        return solution(x0, x1, x1, Solution.DIVERGED, iterations, fx);
+
+      boolean unconfirmed = false;
+      if (Math.abs(fx) < epsilon) {
+        if (epsilon >= PrecisionEscalation.NOISE_FLOOR)
+          return solution(x0, x1, x1, Solution.CONVERGED, iterations, fx);
+
+        // Below the noise floor a small residual must be confirmed
+        evaluations++;
+        if (PrecisionEscalation.confirm(function, x1, epsilon))
+          return solution(x0, x1, x1, Solution.CONVERGED, iterations, fx);
+        unconfirmed = true;
+      }
+
+      if (Math.abs(fx) >= best / 2)
+        stalls++;
+      else
+        stalls = 0;
+      best = java.lang.Math.min(best, Math.abs(fx));
+
+      // A step that can't move x1 any more is a stall too
+      double slope = (fx - f0)/(x1 - x0);
+      boolean stuck = stalls >= STALL_LIMIT || x1 == x0 || fx == f0;
+      if (slope != 0 && !Double.isNaN(slope) && !Double.isInfinite(slope))
+        lastSlope = slope;
+      if (unconfirmed || stuck && PrecisionEscalation.isWorthRefining(
+                                      fx, x1, lastSlope, epsilon)) {
+        PrecisionEscalation escalation = new PrecisionEscalation(function, null);
+        double x = escalation.refine(x0, x1, epsilon);
+        evaluations += escalation.getEvaluations();
+
+        if (Double.isNaN(x))
+          return solution(x0, x1, x1, Solution.MAX_ITERATIONS, iterations, fx);
+        return solution(x0, x1, x, Solution.CONVERGED, iterations,
+                        escalation.getResidual());
+      }
+
+      x0 = x1;
+      f0 = fx;
+      x1 = x1 - fx/slope;
 
       iterations++;
     }
 
-    return null;
+    return solution(x0, x1, x1, Solution.MAX_ITERATIONS, iterations, f(x1));
   }
 
-  public ArrayList<Solution> solve(double a, double b, double epsilon)
+  private static Solution solution(double a, double b, double x, int status,
+                                   int iterations, double fx)
   {
-    BruteForce bruteForce = new BruteForce(function);
-    ArrayList<Solution> possibleIntervals = bruteForce.solve(a, b);
-
-    ArrayList<Solution> roots = new ArrayList<Solution>();
-
-    for (int i = 0; i < possibleIntervals.size(); i++) {
-      Solution sol = possibleIntervals.get(i);
-      roots.add(find(sol.getA(), sol.getB(), epsilon));
-    }
+    Solution s = new Solution(a, b, x, status);
+    s.setIterations(iterations);
+    s.setResidual(Math.abs(fx));
+    return s;
+  }
 
-    return roots;
+  @Override
+  protected Solution refine(Solution bracket, double epsilon)
+  {
+    Solution s = confine(find(bracket.getA(), bracket.getB(), epsilon),
+                         bracket);
+    if (s.hasRoot())
+      evaluations += polisher.polish(s);
+    return s;
   }
 }
-
@@ -18,7 +18,20 @@
 */
 package edu.inforscience.math;
 
+/**
+ * A root found by one of the methods, or the point where a method gave up
+ * looking for it, together with the cost of the search.
+ */
 public class Solution {
+  /** The method met its tolerance, x is the root. */
+  public static final int CONVERGED      = 0;
+  /** f changes sign in [a, b], x is its midpoint. */
+  public static final int BRACKETED      = 1;
+  /** The iteration limit was reached, x is the last iterate. */
+  public static final int MAX_ITERATIONS = 2;
+  /** The iteration broke down, f undefined or a zero slope at x. */
+  public static final int DIVERGED       = 3;
+
   /** Start of the interval where the solution lies. */
   private double a;
 
@@ -28,12 +41,116 @@ public class Solution {
   /** Approximate value of the solution */
   private double x;
 
+  /** f(a) and f(b), NaN when they weren't computed */
+  private double fa;
+  private double fb;
+
+  /** Low order part of a polished solution, x + xLow is good to 32 digits */
+  private double xLow;
+
+  private int status;
+  private int iterations;
+  private long evaluations;
+  /** |f(x)|, NaN when it wasn't computed */
+  private double residual;
+  /** Wall time spent on this solution, in nanoseconds */
+  private long time;
+
 
   public Solution(double a, double b, double x)
+  {
+    this(a, b, x, CONVERGED);
+  }
+
+  public Solution(double a, double b, double x, int status)
   {
     setA(a);
     setB(b);
     setX(x);
+    setStatus(status);
+    setResidual(Double.NaN);
+    setFa(Double.NaN);
+    setFb(Double.NaN);
+  }
+
+  /**
+   * Tells if the solution locates a root, converged or bracketed.
+   * @return boolean, false if the method gave up
+   */
+  public boolean hasRoot()
+  {
+    return status == CONVERGED || status == BRACKETED;
+  }
+
+  public int getStatus()
+  {
+    return status;
+  }
+
+  public void setStatus(int status)
+  {
+    this.status = status;
+  }
+
+  /**
+   * Returns the name of a status, for reports.
+   * @param status CONVERGED, BRACKETED, MAX_ITERATIONS or DIVERGED
+   * @return String, e.g. "converged"
+   */
+  public static String statusName(int status)
+  {
+    switch (status) {
+      case CONVERGED:      return "converged";
+      case BRACKETED:      return "bracketed";
+      case MAX_ITERATIONS: return "max-iterations";
+      case DIVERGED:       return "diverged";
+    }
+
+    return "unknown";
+  }
+
+  public int getIterations()
+  {
+    return iterations;
+  }
+
+  public void setIterations(int iterations)
+  {
+    this.iterations = iterations;
+  }
+
+  public long getEvaluations()
+  {
+    return evaluations;
+  }
+
+  public void setEvaluations(long evaluations)
+  {
+    this.evaluations = evaluations;
+  }
+
+  public double getResidual()
+  {
+    return residual;
+  }
+
+  public void setResidual(double residual)
+  {
+    this.residual = residual;
+  }
+
+  /**
+   * Returns the wall time spent on this solution.
+   * @return long, nanoseconds
+   */
+  public long getTime()
+  {
+    return time;
+  }
+
+  public void setTime(long time)
+  {
+    this.time = time;
   }
 
   public double getA()
@@ -66,5 +183,35 @@ public class Solution {
     this.x = x;
   }
 
+  public double getXLow()
+  {
+    return xLow;
+  }
+
+  public void setXLow(double xLow)
+  {
+    this.xLow = xLow;
+  }
+
+  public double getFa()
+  {
+    return fa;
+  }
+
+  public void setFa(double fa)
+  {
+    this.fa = fa;
+  }
+
+  public double getFb()
+  {
+    return fb;
+  }
+
+  public void setFb(double fb)
+  {
+    this.fb = fb;
+  }
+
 }
 
@@ -0,0 +1,68 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+import java.util.ArrayList;
+
+/**
+ * Regression tests of AdaptiveScanner, run with
+ * java -cp out:test-out edu.inforscience.math.AdaptiveScannerTest
+ */
+public class AdaptiveScannerTest {
+
+  public static void main(String[] args)
+  {
+    tanBracketsEveryZeroAndPole();
+    System.out.println("AdaptiveScannerTest: OK");
+  }
+
+  /**
+   * tan(x) on [-100, 100] has 63 zeros and 64 poles. The grid interval
+   * [-3.125, 0] holds the pole at -pi/2 and the root 0, it must be split
+   * even though its ends change sign.
+   */
+  private static void tanBracketsEveryZeroAndPole()
+  {
+    Function f = new Function("tan(x)", "f");
+    ArrayList<Solution> brackets = new AdaptiveScanner(f).solve(-100, 100);
+    check(brackets.size() == 127, "brackets of tan(x): " + brackets.size());
+
+    RootFinder[] finders = { new Brent(f), new Itp(f) };
+    for (RootFinder finder : finders) {
+      int converged = 0, diverged = 0;
+      for (Solution s : finder.solve(-100, 100, 1e-10)) {
+        if (s.getStatus() == Solution.CONVERGED)
+          converged++;
+        else if (s.getStatus() == Solution.DIVERGED)
+          diverged++;
+      }
+
+      check(converged == 63, finder.getName() + " zeros: " + converged);
+      check(diverged == 64, finder.getName() + " poles: " + diverged);
+    }
+  }
+
+  private static void check(boolean condition, String message)
+  {
+    if (!condition)
+      throw new AssertionError(message);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+import java.util.ArrayList;
+
+/**
+ * Regression tests of Brent, run with
+ * java -cp out:test-out edu.inforscience.math.BrentTest
+ */
+public class BrentTest {
+
+  public static void main(String[] args)
+  {
+    poleAtZeroDiverges();
+    rootAtZeroConverges();
+    System.out.println("BrentTest: OK");
+  }
+
+  /**
+   * The tolerance on x must not vanish with x, or a bracket collapsing on
+   * a pole at 0 runs out of iterations.
+   */
+  private static void poleAtZeroDiverges()
+  {
+    Brent brent = new Brent(new Function("1/x", "f(x)"));
+    ArrayList<Solution> solutions = brent.solve(-1, 1, 1e-12);
+    check(solutions.size() == 1, "solutions of 1/x: " + solutions.size());
+    check(solutions.get(0).getStatus() == Solution.DIVERGED,
+          "1/x on [-1, 1] is " +
+          Solution.statusName(solutions.get(0).getStatus()));
+
+    Solution s = brent.find(-1, 0.7, 1e-12);
+    check(s.getStatus() == Solution.DIVERGED,
+          "1/x on [-1, 0.7] is " + Solution.statusName(s.getStatus()));
+  }
+
+  private static void rootAtZeroConverges()
+  {
+    String[] functions = { "x", "sin(x)", "x^3" };
+    for (String function : functions) {
+      Solution s = new Brent(new Function(function, "f(x)"))
+          .find(-1, 0.7, 1e-12);
+      check(s.getStatus() == Solution.CONVERGED,
+            function + " is " + Solution.statusName(s.getStatus()));
+      check(Math.abs(s.getX()) < 1e-3, function + " root at " + s.getX());
+    }
+  }
+
+  private static void check(boolean condition, String message)
+  {
+    if (!condition)
+      throw new AssertionError(message);
+  }
+}
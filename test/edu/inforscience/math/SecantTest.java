@@ -0,0 +1,65 @@
+/*
+    Numeth is simple application to solve many mathematical problems numerically.
+
+    Copyright (C) 2012 Rafael Rendon Pablo <smart.rendon@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+package edu.inforscience.math;
+
+import edu.inforscience.lang.Function;
+
+/**
+ * Regression tests of Secant, run with
+ * java -cp out:test-out edu.inforscience.math.SecantTest
+ */
+public class SecantTest {
+
+  public static void main(String[] args)
+  {
+    flatSecantDiverges();
+    confirmRejectsInfinity();
+    System.out.println("SecantTest: OK");
+  }
+
+  /**
+   * sin(1/x) has flat secants on [-5, 5], the next iterate is infinite and
+   * f there is 0. That must not be taken for a root, nor reach BigDecimal.
+   */
+  private static void flatSecantDiverges()
+  {
+    Function f = new Function("sin(1/x)", "f(x)");
+    for (Solution s : new Secant(f).solve(-5, 5, 1e-20)) {
+      double x = s.getX();
+      if (s.hasRoot())
+        check(!Double.isNaN(x) && !Double.isInfinite(x), "root at " + x);
+    }
+  }
+
+  private static void confirmRejectsInfinity()
+  {
+    Function f = new Function("sin(1/x)", "f(x)");
+    check(!PrecisionEscalation.confirm(f, Double.POSITIVE_INFINITY, 1e-20),
+          "confirmed a residual at infinity");
+    check(Double.isNaN(new PrecisionEscalation(f, null)
+                           .refine(1, Double.NEGATIVE_INFINITY, 1e-20)),
+          "refined from infinity");
+  }
+
+  private static void check(boolean condition, String message)
+  {
+    if (!condition)
+      throw new AssertionError(message);
+  }
+}